@@ -0,0 +1,313 @@
+package edu.moravian.csci299.gravitysnake;
+
+import android.graphics.PointF;
+import android.graphics.RectF;
+
+import java.util.List;
+
+/**
+ * Picks the few body points of a snake that are needed to draw it. The body
+ * is drawn as thick lines (as wide as the body pieces, with round ends)
+ * between the picked points, which looks the same as a circle at every step
+ * as long as every skipped step is close to the line. Straight parts of the
+ * snake need only their two ends, and curves get more points the sharper
+ * they are, so the cost of drawing depends on the shape of the snake and not
+ * its length.
+ *
+ * The points are kept up to date as the snake moves: each new step either
+ * stretches the last line or starts a new one (using a MergeCone, like
+ * PolylineSnake), and points behind the tail are dropped, so each update
+ * only looks at the steps taken since the last one. The first line keeps the
+ * start it was made with (so every step it skips is still close to it) and
+ * is only drawn from about where the tail is along it. A PolylineSnake
+ * already is a list of points like this, so its vertices are used as they
+ * are, only copying the ones that changed.
+ */
+public class BodyDecimator {
+    /** Receives each line of the body that may be visible. */
+    public interface Visitor {
+        /**
+         * @param ax the x coordinate of the start of the line (the end closer to the tail), in px
+         * @param ay the y coordinate of the start of the line, in px
+         * @param bx the x coordinate of the end of the line, in px
+         * @param by the y coordinate of the end of the line, in px
+         */
+        void visit(float ax, float ay, float bx, float by);
+    }
+
+    /** The furthest (in px) any skipped step may be from the lines drawn */
+    private float tolerance;
+
+    /** The snake the points are for */
+    private SnakeBody snake;
+
+    /**
+     * The picked points, from the tail to the head, in a circular buffer
+     * starting at first. The last point is always the head. Each point also
+     * has the step it was placed at. The first point is where the first
+     * line was started, which may be behind the tail.
+     */
+    private float[] xs = new float[64], ys = new float[64];
+    private int[] seqs = new int[64];
+    private int first, count;
+
+    /** The step of the head at the last update, or the number of vertices added for a PolylineSnake */
+    private int lastSeq;
+
+    /** Decides if the head can stretch the last line while staying close to every step it skips */
+    private final MergeCone cone = new MergeCone();
+
+    /** Where the first line is drawn from, in px: on the first line, about where the tail is along it */
+    private float startX, startY;
+
+    /** The number of times all of the points had to be picked again from scratch */
+    private int rebuilds;
+
+    /** The number of steps looked at by all of the updates */
+    private long stepsVisited;
+
+    /** Used to get the body points of the snake */
+    private final PointF point = new PointF();
+
+    /**
+     * Create a decimator.
+     * @param tolerance the furthest (in px) any skipped step may be from the lines drawn
+     */
+    public BodyDecimator(float tolerance) { this.tolerance = tolerance; }
+
+    /**
+     * @return the furthest (in px) any skipped step may be from the lines drawn
+     */
+    public float getTolerance() { return tolerance; }
+
+    /**
+     * Changes the tolerance, the points are picked again at the next update.
+     * @param tolerance the furthest (in px) any skipped step may be from the lines drawn
+     */
+    public void setTolerance(float tolerance) {
+        if (tolerance != this.tolerance) {
+            this.tolerance = tolerance;
+            snake = null;
+        }
+    }
+
+    /**
+     * @return the number of points picked
+     */
+    public int getPointCount() { return count; }
+
+    /**
+     * @param i the index of a point, 0 is the tail
+     * @return the x coordinate of the point, in px
+     */
+    public float getX(int i) { return i == 0 ? startX : xs[(first + i) % xs.length]; }
+
+    /**
+     * @param i the index of a point, 0 is the tail
+     * @return the y coordinate of the point, in px
+     */
+    public float getY(int i) { return i == 0 ? startY : ys[(first + i) % ys.length]; }
+
+    /**
+     * @return the number of times all of the points had to be picked again
+     *         from scratch (a new snake, a new tolerance, or missing too many
+     *         steps between updates)
+     */
+    public int getRebuildCount() { return rebuilds; }
+
+    /**
+     * @return the number of steps (or vertices of a PolylineSnake) looked at
+     *         by all of the updates so far
+     */
+    public long getStepsVisited() { return stepsVisited; }
+
+    /**
+     * Brings the picked points up to date with the snake.
+     * @param body the snake, either a Snake or a PolylineSnake
+     */
+    public void update(SnakeBody body) {
+        if (body instanceof PolylineSnake) {
+            updateVertices((PolylineSnake) body);
+        } else {
+            update((Snake) body);
+        }
+    }
+
+    /**
+     * Brings the picked points up to date with a snake that has a point for
+     * each step.
+     * @param snake the snake
+     */
+    private void update(Snake snake) {
+        final List<PointF> body = snake.getBody();
+        final int headSeq = snake.getHeadSequence(), tailSeq = headSeq - body.size() + 1;
+        int from = lastSeq + 1;
+        if (snake != this.snake || from < tailSeq || from > headSeq + 1) {
+            // Start over from the tail
+            this.snake = snake;
+            first = count = 0;
+            cone.reset();
+            from = tailSeq;
+            rebuilds++;
+        }
+        for (int seq = from; seq <= headSeq; seq++) {
+            PointF pt = body.get(headSeq - seq);
+            step(seq, pt.x, pt.y);
+        }
+        stepsVisited += headSeq - from + 2; // and the tail
+        lastSeq = headSeq;
+
+        // Drop the points that are behind the tail
+        while (count > 1 && seqs[(first + 1) % seqs.length] <= tailSeq) {
+            first = (first + 1) % seqs.length;
+            count--;
+        }
+        if (count == 1) { cone.reset(); }
+        PointF tail = body.get(body.size() - 1);
+        trimFirstLine(tail.x, tail.y);
+    }
+
+    /**
+     * Finds where to draw the first line from now that the tail may have
+     * moved along it. Every step after the tail is further from the start of
+     * the line than the tail is (the cone only merges steps that are further
+     * along) and within the tolerance of the line, so none of them is more
+     * than tolerance^2 / (distance of the tail along the line) behind the
+     * tail along the line. Drawing from there keeps every step within the
+     * tolerance without looking at any of them, and starts the line only
+     * about the tolerance away from the tail.
+     * @param tailX the x coordinate of the tail, in px
+     * @param tailY the y coordinate of the tail, in px
+     */
+    private void trimFirstLine(float tailX, float tailY) {
+        startX = xs[first];
+        startY = ys[first];
+        if (count < 2) { return; }
+        final int second = (first + 1) % xs.length;
+        final float dx = xs[second] - startX, dy = ys[second] - startY;
+        final float length = (float) Math.hypot(dx, dy);
+        if (length == 0) { return; }
+        final float along = ((tailX - startX) * dx + (tailY - startY) * dy) / length;
+        if (along <= tolerance) { return; }
+        final float s = Math.min(along - tolerance * tolerance / along, length) / length;
+        startX += s * dx;
+        startY += s * dy;
+    }
+
+    /**
+     * Brings the points up to date with the vertices of a polyline snake,
+     * they are already within PolylineSnake.MERGE_TOLERANCE_DP of the path.
+     * Only the vertices that changed since the last update are copied: the
+     * new ones, the one that was the head (it may have been stretched), and
+     * the tail (it moves as the tail is trimmed).
+     * @param snake the snake
+     */
+    private void updateVertices(PolylineSnake snake) {
+        final int n = snake.getVertexCount();
+        final int headSeq = snake.getVerticesAdded() - 1, tailSeq = headSeq - n + 1;
+        int from = lastSeq;
+        if (snake != this.snake || count == 0 || from < tailSeq || from > headSeq) {
+            // Start over from the tail
+            this.snake = snake;
+            first = count = 0;
+            cone.reset();
+            from = tailSeq;
+            rebuilds++;
+        } else {
+            // Drop the old head (it is copied again) and the vertices trimmed off the tail
+            count--;
+            while (count > 0 && seqs[first] < tailSeq) {
+                first = (first + 1) % seqs.length;
+                count--;
+            }
+        }
+        for (int seq = from; seq <= headSeq; seq++) {
+            snake.getVertex(seq - tailSeq, point);
+            add(seq, point.x, point.y);
+        }
+        snake.getVertex(0, point);
+        xs[first] = startX = point.x;
+        ys[first] = startY = point.y;
+        stepsVisited += headSeq - from + 2;
+        lastSeq = headSeq;
+    }
+
+    /**
+     * Adds the next step of the snake, either stretching the last line to
+     * it or starting a new line.
+     * @param seq the step
+     * @param x the x coordinate of the step, in px
+     * @param y the y coordinate of the step, in px
+     */
+    private void step(int seq, float x, float y) {
+        if (count == 0) {
+            add(seq, x, y);
+            return;
+        }
+        final int head = (first + count - 1) % xs.length;
+        if (cone.stretch(x, y, tolerance)) {
+            // Still straight enough, stretch the last line
+            xs[head] = x;
+            ys[head] = y;
+            seqs[head] = seq;
+            return;
+        }
+
+        // Start a new line from the current head
+        cone.start(xs[head], ys[head], x, y, tolerance);
+        add(seq, x, y);
+    }
+
+    /** Adds a point as the new head, making room if needed. */
+    private void add(int seq, float x, float y) {
+        makeRoom();
+        int i = (first + count) % xs.length;
+        xs[i] = x;
+        ys[i] = y;
+        seqs[i] = seq;
+        count++;
+    }
+
+    /** Makes room for one more point, if the circular buffer is full. */
+    private void makeRoom() {
+        if (count == xs.length) {
+            // Unwrap the circular buffer into bigger arrays
+            float[] newXs = new float[2 * count], newYs = new float[2 * count];
+            int[] newSeqs = new int[2 * count];
+            for (int i = 0; i < count; i++) {
+                int j = (first + i) % count;
+                newXs[i] = xs[j];
+                newYs[i] = ys[j];
+                newSeqs[i] = seqs[j];
+            }
+            xs = newXs;
+            ys = newYs;
+            seqs = newSeqs;
+            first = 0;
+        }
+    }
+
+    /**
+     * Visits each line between the picked points that may be within an
+     * area. A snake with a single point is visited as a line from the point
+     * to itself.
+     * @param area the area to find lines in, in px
+     * @param radius how far from the line is drawn, in px
+     * @param visitor receives each of the lines
+     */
+    public void forEachLineNear(RectF area, float radius, Visitor visitor) {
+        if (count == 1) {
+            visitor.visit(startX, startY, startX, startY);
+            return;
+        }
+        final int n = xs.length;
+        for (int i = 0; i < count - 1; i++) {
+            int a = (first + i) % n, b = (first + i + 1) % n;
+            float ax = i == 0 ? startX : xs[a], ay = i == 0 ? startY : ys[a];
+            if (Math.max(ax, xs[b]) + radius >= area.left && Math.min(ax, xs[b]) - radius <= area.right &&
+                    Math.max(ay, ys[b]) + radius >= area.top && Math.min(ay, ys[b]) - radius <= area.bottom) {
+                visitor.visit(ax, ay, xs[b], ys[b]);
+            }
+        }
+    }
+}
@@ -12,9 +12,12 @@ import android.hardware.SensorEventListener;
 import android.hardware.SensorManager;
 import android.os.Bundle;
 import android.os.Handler;
+import android.util.Log;
 import android.view.View;
 import android.view.WindowManager;
 
+import java.io.IOException;
+
 /**
  * Activity that runs the actual game. Besides making sure the app is displayed
  * full-screen, this Activity sets the difficulty for the game and gets the
@@ -32,7 +35,10 @@ public class GameActivity extends AppCompatActivity implements SensorEventListen
 
     /**
      * Gets sensorManager and gravitySensor.
-     * Passes the difficulty from intent to snakeGameView.
+     * Passes the difficulty and world scale (or the level from the level pack)
+     * from intent to snakeGameView, switches it to an arena if the intent has
+     * a number of arena bots, and starts streaming to spectators if the
+     * intent has a spectator port.
      * @param savedInstanceState
      */
     @Override
@@ -43,31 +49,51 @@ public class GameActivity extends AppCompatActivity implements SensorEventListen
 
         Intent intent = getIntent();
         int difficulty = intent.getIntExtra("level", 0);
+        float worldScale = intent.getFloatExtra("worldScale", 1f);
 
         sensorManager = (SensorManager)getSystemService(SENSOR_SERVICE);
         gravitySensor = sensorManager.getDefaultSensor(Sensor.TYPE_GRAVITY);
 
         snakeGameView = findViewById(R.id.snakeGameView);
         snakeGameView.setDifficulty(difficulty);
+        snakeGameView.setWorldScale(worldScale);
+        if (intent.hasExtra("packLevel")) {
+            try {
+                LevelPack pack = LevelPack.openAsset(this);
+                snakeGameView.setPackLevel(pack.getLevel(intent.getIntExtra("packLevel", 0)), difficulty);
+            } catch (IOException | RuntimeException ex) {
+                Log.w("GameActivity", "could not load level from pack", ex);
+            }
+        }
+        if (intent.hasExtra("arenaBots")) {
+            snakeGameView.setArena(intent.getIntExtra("arenaBots", 0));
+        }
+        if (intent.hasExtra("spectatorPort")) {
+            snakeGameView.setSpectatorPort(intent.getIntExtra("spectatorPort", 0));
+        }
     }
 
     /**
-     * When this method is called the gravity sensor is registered by the SensorManager.
+     * When this method is called the gravity sensor is registered by the
+     * SensorManager and the game is resumed.
      */
     @Override
     protected void onResume()
     {
         sensorManager.registerListener(this, gravitySensor, SensorManager.SENSOR_DELAY_UI);
+        snakeGameView.resume();
         super.onResume();
     }
 
     /**
-     * When this method is called the gravity sensor is unregistered by the SensorManager.
+     * When this method is called the gravity sensor is unregistered by the
+     * SensorManager and the game is paused.
      */
     @Override
     protected void onPause()
     {
         sensorManager.unregisterListener(this, gravitySensor);
+        snakeGameView.pause();
         super.onPause();
     }
 
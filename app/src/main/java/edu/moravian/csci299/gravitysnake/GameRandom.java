@@ -0,0 +1,73 @@
+package edu.moravian.csci299.gravitysnake;
+
+import java.util.Random;
+
+/**
+ * A random number generator whose whole state is a single long that can be
+ * read and set, so a saved game continues with exactly the same random
+ * numbers it would have had. Uses the xorshift64* generator, all of the
+ * usual Random methods (nextFloat(), nextDouble(), ...) work on top of it.
+ *
+ * Unlike Random this is not thread-safe.
+ */
+public class GameRandom extends Random {
+    /** The current state, never 0 */
+    private long state;
+
+    /**
+     * Create a generator with the given seed.
+     * @param seed the seed
+     */
+    public GameRandom(long seed) { super(seed); }
+
+    /**
+     * Reset the generator with a new seed.
+     * @param seed the seed
+     */
+    @Override
+    public synchronized void setSeed(long seed) {
+        // Called by the Random constructor, mix the seed so nearby seeds aren't similar
+        long z = seed + 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        z ^= z >>> 31;
+        state = z == 0 ? 1 : z;
+    }
+
+    /**
+     * @return the current state of the generator
+     */
+    public long getState() { return state; }
+
+    /**
+     * @param state a state previously returned by getState()
+     */
+    public void setState(long state) { this.state = state == 0 ? 1 : state; }
+
+    /**
+     * Draws the number of tries until the first success, when each try
+     * succeeds with the same probability (a geometric distribution). This is
+     * how many frames it takes for a check like "random.nextFloat() < p" to
+     * first pass, found with a single random number. The mean is 1 / p.
+     * @param p the probability each try succeeds, more than 0
+     * @return the number of tries, at least 1 and at most Integer.MAX_VALUE / 2
+     */
+    public int nextGeometric(double p) {
+        if (p >= 1) { return 1; }
+        double tries = 1 + Math.floor(Math.log(1 - nextDouble()) / Math.log1p(-p));
+        return (int) Math.min(tries, Integer.MAX_VALUE / 2);
+    }
+
+    /**
+     * Generates the next random bits, which every other method uses.
+     * @param bits the number of random bits needed
+     * @return an int with the low bits set randomly
+     */
+    @Override
+    protected int next(int bits) {
+        state ^= state >>> 12;
+        state ^= state << 25;
+        state ^= state >>> 27;
+        return (int) ((state * 0x2545F4914F6CDD1DL) >>> (64 - bits));
+    }
+}
@@ -0,0 +1,389 @@
+package edu.moravian.csci299.gravitysnake;
+
+import android.graphics.RectF;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * All of the circular items in a game (food, walls, ...) stored as parallel
+ * arrays of primitives instead of one object per item. Removing an item moves
+ * the last item into its place, so the items always fill the start of the
+ * arrays and a pass over all of them is one tight loop.
+ *
+ * Since items move around in the arrays, each item also gets an id that
+ * never changes while it is in the store. The ids are used in the spatial
+ * index of the items and can be turned back into a position with slotOf().
+ */
+public class ItemStore {
+    /** The type of items that the snake eats */
+    public final static int FOOD = 0;
+
+    /** The type of items that the snake must avoid */
+    public final static int WALL = 1;
+
+    /** The expiry of items that never expire */
+    public final static int NEVER = Integer.MAX_VALUE;
+
+    /** Receives each item found by a query. */
+    public interface Visitor {
+        /**
+         * @param type the type of the item
+         * @param x the x coordinate of the item, in px
+         * @param y the y coordinate of the item, in px
+         */
+        void visit(int type, float x, float y);
+    }
+
+    /** Is told about every change to the items, for example to send them somewhere. */
+    public interface Listener {
+        /**
+         * @param id the id of the new item
+         * @param type the type of the item
+         * @param x the x coordinate of the item, in px
+         * @param y the y coordinate of the item, in px
+         * @param radius the radius of the item, in px
+         */
+        void itemAdded(int id, int type, float x, float y, float radius);
+
+        /**
+         * @param id the id of the removed item
+         */
+        void itemRemoved(int id);
+
+        /**
+         * @param id the id of the item
+         * @param x the new x coordinate of the item, in px
+         * @param y the new y coordinate of the item, in px
+         */
+        void itemMoved(int id, float x, float y);
+    }
+
+    /** The location, radius, type, expiry, and id of each item, only the first size are used */
+    private float[] xs = new float[16], ys = new float[16], radii = new float[16];
+    private int[] types = new int[16], expiries = new int[16], ids = new int[16];
+
+    /** The number of items */
+    private int size;
+
+    /** The position of each item by its id, -1 for ids not in use */
+    private int[] slots = new int[16];
+
+    /** Ids that have been used and can be given out again */
+    private int[] freeIds = new int[16];
+    private int freeCount;
+
+    /** The next never used id */
+    private int nextId;
+
+    /** Index of the items by their ids */
+    private final SpatialGrid index;
+
+    /** Is told about changes to the items, may be null */
+    private Listener listener;
+
+    /** The largest radius of any item ever added, in px */
+    private float maxRadius;
+
+    /** The segments and radius of the current findNearSegments() query */
+    private float[] querySegments;
+    private int querySegmentCount;
+    private float queryRadius;
+
+    /** The positions of the items found by the last query, grown as needed, only the first hitCount are used */
+    private int[] hits = new int[16];
+    private int hitCount;
+
+    /** The one segment of a findOverlappingPath() query */
+    private final float[] pathSegment = new float[4];
+
+    /** Checks each item found by findNearSegments() against its segments, made once so queries don't allocate */
+    private final SpatialGrid.Visitor segmentVisitor = this::checkSegments;
+
+    /** The visitor of the current forEachNear() query */
+    private Visitor nearVisitor;
+
+    /** Passes each item found by forEachNear() on with its type, made once so queries don't allocate */
+    private final SpatialGrid.Visitor typeVisitor = this::visitWithType;
+
+    /**
+     * Create an empty store.
+     * @param index the empty spatial index to keep the items in
+     */
+    public ItemStore(SpatialGrid index) {
+        this.index = index;
+        Arrays.fill(slots, -1);
+    }
+
+    /**
+     * @return the number of items
+     */
+    public int size() { return size; }
+
+    /**
+     * Sets who is told about every item that is added, removed, or moved.
+     * Clearing the store is not reported.
+     * @param listener the listener, or null for none
+     */
+    public void setListener(Listener listener) { this.listener = listener; }
+
+    /** Removes all of the items. */
+    public void clear() {
+        Arrays.fill(slots, 0, nextId, -1);
+        size = freeCount = nextId = 0;
+        index.clear();
+    }
+
+    /**
+     * Adds an item.
+     * @param type the type of the item
+     * @param x the x coordinate of the item, in px
+     * @param y the y coordinate of the item, in px
+     * @param radius the radius of the item, in px
+     * @param expiry the frame when the item is removed, or NEVER
+     * @return the id of the new item
+     */
+    public int add(int type, float x, float y, float radius, int expiry) {
+        if (size == xs.length) {
+            int capacity = 2 * size;
+            xs = Arrays.copyOf(xs, capacity);
+            ys = Arrays.copyOf(ys, capacity);
+            radii = Arrays.copyOf(radii, capacity);
+            types = Arrays.copyOf(types, capacity);
+            expiries = Arrays.copyOf(expiries, capacity);
+            ids = Arrays.copyOf(ids, capacity);
+        }
+        int id = freeCount > 0 ? freeIds[--freeCount] : newId();
+        xs[size] = x;
+        ys[size] = y;
+        radii[size] = radius;
+        types[size] = type;
+        expiries[size] = expiry;
+        ids[size] = id;
+        slots[id] = size;
+        size++;
+        maxRadius = Math.max(maxRadius, radius);
+        index.insert(id, x, y);
+        if (listener != null) { listener.itemAdded(id, type, x, y, radius); }
+        return id;
+    }
+
+    /** @return an id that has never been used before, growing the slots to fit it */
+    private int newId() {
+        if (nextId == slots.length) {
+            slots = Arrays.copyOf(slots, 2 * nextId);
+            Arrays.fill(slots, nextId, slots.length, -1);
+        }
+        return nextId++;
+    }
+
+    /**
+     * Removes the item at a position, moving the last item into its place.
+     * @param slot the position of the item
+     */
+    public void removeAt(int slot) {
+        final int id = ids[slot];
+        index.remove(id, xs[slot], ys[slot]);
+        slots[id] = -1;
+        if (freeCount == freeIds.length) { freeIds = Arrays.copyOf(freeIds, 2 * freeCount); }
+        freeIds[freeCount++] = id;
+
+        final int last = --size;
+        if (slot != last) {
+            xs[slot] = xs[last];
+            ys[slot] = ys[last];
+            radii[slot] = radii[last];
+            types[slot] = types[last];
+            expiries[slot] = expiries[last];
+            ids[slot] = ids[last];
+            slots[ids[slot]] = slot;
+        }
+        if (listener != null) { listener.itemRemoved(id); }
+    }
+
+    /**
+     * Removes an item.
+     * @param id the id of the item
+     * @return true if the item was in the store
+     */
+    public boolean remove(int id) {
+        int slot = slotOf(id);
+        if (slot < 0) { return false; }
+        removeAt(slot);
+        return true;
+    }
+
+    /**
+     * Moves the item at a position to a new location.
+     * @param slot the position of the item
+     * @param x the new x coordinate of the item, in px
+     * @param y the new y coordinate of the item, in px
+     */
+    public void moveAt(int slot, float x, float y) {
+        index.remove(ids[slot], xs[slot], ys[slot]);
+        xs[slot] = x;
+        ys[slot] = y;
+        index.insert(ids[slot], x, y);
+        if (listener != null) { listener.itemMoved(ids[slot], x, y); }
+    }
+
+    /**
+     * @param id the id of an item
+     * @return the current position of the item, or -1 if it is not in the store
+     */
+    public int slotOf(int id) { return id >= 0 && id < nextId ? slots[id] : -1; }
+
+    /** @return the x coordinate of the item at a position, in px */
+    public float getX(int slot) { return xs[slot]; }
+
+    /** @return the y coordinate of the item at a position, in px */
+    public float getY(int slot) { return ys[slot]; }
+
+    /** @return the radius of the item at a position, in px */
+    public float getRadius(int slot) { return radii[slot]; }
+
+    /** @return the type of the item at a position */
+    public int getType(int slot) { return types[slot]; }
+
+    /** @return the frame the item at a position expires, or NEVER */
+    public int getExpiry(int slot) { return expiries[slot]; }
+
+    /** @return the id of the item at a position */
+    public int getId(int slot) { return ids[slot]; }
+
+    /**
+     * @param type the type of item to count
+     * @return the number of items of that type
+     */
+    public int countOfType(int type) {
+        int count = 0;
+        for (int i = 0; i < size; i++) { if (types[i] == type) { count++; } }
+        return count;
+    }
+
+    /**
+     * @param i which of the items found by the last query, less than the
+     *          number it returned
+     * @return the position of that item
+     */
+    public int getHit(int i) { return hits[i]; }
+
+    /**
+     * Finds every item that a circle overlaps anywhere along a path. This is
+     * the same as checking the circle at every point along the path (a swept
+     * circle or "capsule"). Only the items in the index near the bounding box
+     * of the path are looked at. Get the items found with getHit().
+     * @param ax the x coordinate of the start of the path, in px
+     * @param ay the y coordinate of the start of the path, in px
+     * @param bx the x coordinate of the end of the path, in px
+     * @param by the y coordinate of the end of the path, in px
+     * @param radius the radius of the circle, in px
+     * @return the number of items overlapped
+     */
+    public int findOverlappingPath(float ax, float ay, float bx, float by, float radius) {
+        pathSegment[0] = ax;
+        pathSegment[1] = ay;
+        pathSegment[2] = bx;
+        pathSegment[3] = by;
+        return findNearSegments(pathSegment, 1, radius);
+    }
+
+    /**
+     * Finds every item that a circle overlaps anywhere along any of several
+     * segments, for example all of the movements of all of the fingers
+     * touching the screen since the last touch event. This makes one query of
+     * the spatial index covering all of the segments, and each item found is
+     * only reported once. Get the items found with getHit().
+     * @param segments the start x, start y, end x, and end y of each segment, in px
+     * @param count the number of segments
+     * @param radius the radius of the circle, in px
+     * @return the number of items overlapped
+     */
+    public int findNearSegments(float[] segments, int count, float radius) {
+        hitCount = 0;
+        if (count == 0 || size == 0) { return 0; }
+        float left = Float.POSITIVE_INFINITY, top = Float.POSITIVE_INFINITY;
+        float right = Float.NEGATIVE_INFINITY, bottom = Float.NEGATIVE_INFINITY;
+        for (int i = 0; i < 4 * count; i += 2) {
+            left = Math.min(left, segments[i]);
+            right = Math.max(right, segments[i]);
+            top = Math.min(top, segments[i + 1]);
+            bottom = Math.max(bottom, segments[i + 1]);
+        }
+        final float margin = radius + maxRadius;
+        querySegments = segments;
+        querySegmentCount = count;
+        queryRadius = radius;
+        index.forEachNear(left - margin, top - margin, right + margin, bottom + margin, segmentVisitor);
+        querySegments = null;
+        return hitCount;
+    }
+
+    /**
+     * Adds an item found by findNearSegments() to the hits if it overlaps
+     * any of the segments.
+     * @param id the id of the item
+     * @param x the x coordinate of the item, in px
+     * @param y the y coordinate of the item, in px
+     */
+    private void checkSegments(int id, float x, float y) {
+        final int slot = slots[id];
+        final float range = queryRadius + radii[slot], rangeSq = range * range;
+        final float[] segs = querySegments;
+        for (int i = 0; i < 4 * querySegmentCount; i += 4) {
+            if (Util.distanceToSegmentSquared(x, y, segs[i], segs[i + 1], segs[i + 2], segs[i + 3]) < rangeSq) {
+                if (hitCount == hits.length) { hits = Arrays.copyOf(hits, 2 * hitCount); }
+                hits[hitCount++] = slot;
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return the number of bytes that writeTo() writes
+     */
+    public int getSavedSize() { return 4 + 5*4 * size; }
+
+    /**
+     * Writes all of the items in a compact binary form. The ids are not
+     * written, the items get new ids when read back with readFrom().
+     * @param out where to write the items
+     */
+    public void writeTo(ByteBuffer out) {
+        out.putInt(size);
+        for (int i = 0; i < size; i++) {
+            out.putInt(types[i]).putFloat(xs[i]).putFloat(ys[i]).putFloat(radii[i]).putInt(expiries[i]);
+        }
+    }
+
+    /**
+     * Adds all of the items written by writeTo(), in the same order.
+     * @param in where to read the items from
+     */
+    public void readFrom(ByteBuffer in) {
+        final int count = in.getInt();
+        for (int i = 0; i < count; i++) {
+            add(in.getInt(), in.getFloat(), in.getFloat(), in.getFloat(), in.getInt());
+        }
+    }
+
+    /**
+     * Visits each item that may be within an area, using the spatial index
+     * so only the items near the area are looked at.
+     * @param area the area to find items in, in px
+     * @param visitor receives each of the items
+     */
+    public void forEachNear(RectF area, Visitor visitor) {
+        nearVisitor = visitor;
+        index.forEachNear(area.left, area.top, area.right, area.bottom, typeVisitor);
+        nearVisitor = null;
+    }
+
+    /**
+     * Passes an item found by forEachNear() on to its visitor.
+     * @param id the id of the item
+     * @param x the x coordinate of the item, in px
+     * @param y the y coordinate of the item, in px
+     */
+    private void visitWithType(int id, float x, float y) { nearVisitor.visit(types[slots[id]], x, y); }
+}
@@ -0,0 +1,266 @@
+package edu.moravian.csci299.gravitysnake;
+
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A pack of levels stored in a binary file. Each level has the settings of
+ * the game, walls that are placed when the game starts, and a script of walls
+ * that appear at set frames.
+ *
+ * The file is memory-mapped and nothing is read until it is asked for, so
+ * opening a pack (even one with thousands of walls) only reads its header.
+ * Wall locations are stored as fractions of the size of the world so a level
+ * fits any screen.
+ *
+ * The file starts with the int MAGIC, the int VERSION, the int number of
+ * levels, and then the int offset and int length of each level. Each level
+ * is the float initial speed, float speed increase per food, int starting
+ * length, int length increase per food, float wall placement probability,
+ * int wall lifetime, int food count, float world scale, int number of walls,
+ * int number of scripted walls, then the float x and y of each wall, then
+ * the int frame, float x, float y, and int lifetime of each scripted wall
+ * (sorted by frame), and last the short length and UTF-8 bytes of the name.
+ * All numbers are big-endian.
+ */
+public class LevelPack {
+    /** The first int of a level pack, "SNKP" */
+    public final static int MAGIC = 0x534E4B50;
+
+    /** The version of the format */
+    public final static int VERSION = 1;
+
+    /** The name of the level pack in the assets */
+    public final static String ASSET_NAME = "levels.pack";
+
+    /** The number of bytes in the header of the file before the level table */
+    final static int HEADER_SIZE = 3 * 4;
+
+    /** The number of bytes in each level before the walls */
+    final static int LEVEL_HEADER_SIZE = 10 * 4;
+
+    /** The number of bytes for each wall and each scripted wall */
+    final static int WALL_SIZE = 2 * 4, SCRIPTED_WALL_SIZE = 4 * 4;
+
+    /** The contents of the pack */
+    private final ByteBuffer data;
+
+    /** The number of levels in the pack */
+    private final int levelCount;
+
+    /**
+     * One level of a pack. Everything is read straight from the pack when it
+     * is asked for.
+     */
+    public static class Level {
+        /** The contents of the pack */
+        private final ByteBuffer data;
+
+        /** Where the level starts in the pack */
+        private final int offset;
+
+        /** The number of walls and scripted walls */
+        private final int wallCount, scriptedWallCount;
+
+        /**
+         * @param data the contents of the pack
+         * @param offset where the level starts in the pack
+         * @param length the number of bytes in the level
+         * @throws IllegalArgumentException if the level doesn't fit in its length
+         *                                  or its script isn't sorted by frame
+         */
+        private Level(ByteBuffer data, int offset, int length) {
+            this.data = data;
+            this.offset = offset;
+            if (length < LEVEL_HEADER_SIZE + 2) { throw new IllegalArgumentException("level is too short"); }
+            wallCount = data.getInt(offset + 32);
+            scriptedWallCount = data.getInt(offset + 36);
+            long size = LEVEL_HEADER_SIZE + (long) WALL_SIZE * wallCount + (long) SCRIPTED_WALL_SIZE * scriptedWallCount + 2;
+            if (wallCount < 0 || scriptedWallCount < 0 || size > length) {
+                throw new IllegalArgumentException("level doesn't fit in the pack");
+            }
+            final short nameLength = data.getShort(offset + (int) size - 2);
+            if (nameLength < 0 || size + nameLength > length) {
+                throw new IllegalArgumentException("level name doesn't fit in the pack");
+            }
+            // findScriptedWallAfter() searches the script, so it has to be in order
+            for (int i = 1; i < scriptedWallCount; i++) {
+                if (getScriptedWallFrame(i) < getScriptedWallFrame(i - 1)) {
+                    throw new IllegalArgumentException("scripted walls are not sorted by frame");
+                }
+            }
+        }
+
+        /**
+         * @return the name of the level
+         */
+        public String getName() {
+            int at = getNameOffset();
+            byte[] name = new byte[data.getShort(at)];
+            for (int i = 0; i < name.length; i++) { name[i] = data.get(at + 2 + i); }
+            return new String(name, StandardCharsets.UTF_8);
+        }
+
+        /** @return the initial speed of the snake, in dp/frame */
+        public float getInitialSpeed() { return data.getFloat(offset); }
+
+        /** @return the speed increase per food, in dp/frame */
+        public float getSpeedIncreasePerFood() { return data.getFloat(offset + 4); }
+
+        /** @return the starting length of the snake */
+        public int getStartingLength() { return data.getInt(offset + 8); }
+
+        /** @return the length increase per food */
+        public int getLengthIncreasePerFood() { return data.getInt(offset + 12); }
+
+        /** @return the probability of placing a random wall each frame */
+        public float getWallPlacementProbability() { return data.getFloat(offset + 16); }
+
+        /** @return the number of frames random walls last, or 0 for forever */
+        public int getWallLifetime() { return data.getInt(offset + 20); }
+
+        /** @return the number of foods in the game at once */
+        public int getFoodCount() { return data.getInt(offset + 24); }
+
+        /** @return how many times larger than the screen the world is */
+        public float getWorldScale() { return data.getFloat(offset + 28); }
+
+        /** @return the number of walls placed when the game starts */
+        public int getWallCount() { return wallCount; }
+
+        /** @return the x coordinate of a wall, as a fraction of the world width */
+        public float getWallX(int i) { return data.getFloat(wallOffset(i)); }
+
+        /** @return the y coordinate of a wall, as a fraction of the world height */
+        public float getWallY(int i) { return data.getFloat(wallOffset(i) + 4); }
+
+        /** @return the number of scripted walls */
+        public int getScriptedWallCount() { return scriptedWallCount; }
+
+        /** @return the frame a scripted wall appears, scripted walls are sorted by this */
+        public int getScriptedWallFrame(int i) { return data.getInt(scriptedWallOffset(i)); }
+
+        /** @return the x coordinate of a scripted wall, as a fraction of the world width */
+        public float getScriptedWallX(int i) { return data.getFloat(scriptedWallOffset(i) + 4); }
+
+        /** @return the y coordinate of a scripted wall, as a fraction of the world height */
+        public float getScriptedWallY(int i) { return data.getFloat(scriptedWallOffset(i) + 8); }
+
+        /** @return the number of frames a scripted wall lasts, or 0 for forever */
+        public int getScriptedWallLifetime(int i) { return data.getInt(scriptedWallOffset(i) + 12); }
+
+        /**
+         * Finds the first scripted wall that appears after a frame.
+         * @param frame the frame
+         * @return the index of the first scripted wall with a later frame, or
+         *         the number of scripted walls if there are none
+         */
+        public int findScriptedWallAfter(int frame) {
+            int lo = 0, hi = scriptedWallCount;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (getScriptedWallFrame(mid) <= frame) { lo = mid + 1; } else { hi = mid; }
+            }
+            return lo;
+        }
+
+        /** @return where a wall is in the pack */
+        private int wallOffset(int i) {
+            if (i < 0 || i >= wallCount) { throw new IndexOutOfBoundsException("no wall " + i); }
+            return offset + LEVEL_HEADER_SIZE + WALL_SIZE * i;
+        }
+
+        /** @return where a scripted wall is in the pack */
+        private int scriptedWallOffset(int i) {
+            if (i < 0 || i >= scriptedWallCount) { throw new IndexOutOfBoundsException("no scripted wall " + i); }
+            return offset + LEVEL_HEADER_SIZE + WALL_SIZE * wallCount + SCRIPTED_WALL_SIZE * i;
+        }
+
+        /** @return where the name is in the pack */
+        private int getNameOffset() {
+            return offset + LEVEL_HEADER_SIZE + WALL_SIZE * wallCount + SCRIPTED_WALL_SIZE * scriptedWallCount;
+        }
+    }
+
+    /**
+     * Create a pack from its contents. Only the header is checked.
+     * @param data the contents of the pack, positioned at its start
+     * @throws IllegalArgumentException if the data is not a level pack
+     */
+    public LevelPack(ByteBuffer data) {
+        this.data = data.slice();
+        if (this.data.capacity() < HEADER_SIZE || this.data.getInt(0) != MAGIC || this.data.getInt(4) != VERSION) {
+            throw new IllegalArgumentException("not a level pack");
+        }
+        levelCount = this.data.getInt(8);
+        if (levelCount < 0 || HEADER_SIZE + 8L * levelCount > this.data.capacity()) {
+            throw new IllegalArgumentException("level pack is cut short");
+        }
+    }
+
+    /**
+     * Memory-maps a level pack file.
+     * @param file the file
+     * @return the pack
+     * @throws IOException if the file can't be read or is not a level pack
+     */
+    public static LevelPack open(File file) throws IOException {
+        try (FileInputStream in = new FileInputStream(file)) {
+            return map(in.getChannel(), 0, file.length());
+        }
+    }
+
+    /**
+     * Memory-maps the level pack in the assets. The asset must not be
+     * compressed (see aaptOptions in build.gradle) so it can be mapped.
+     * @param context the context to get the assets from
+     * @return the pack
+     * @throws IOException if the asset can't be read or is not a level pack
+     */
+    public static LevelPack openAsset(Context context) throws IOException {
+        try (AssetFileDescriptor afd = context.getAssets().openFd(ASSET_NAME);
+             FileInputStream in = afd.createInputStream()) {
+            return map(in.getChannel(), afd.getStartOffset(), afd.getLength());
+        }
+    }
+
+    /**
+     * Memory-maps part of a file as a level pack. The mapping stays valid
+     * after the channel is closed.
+     */
+    private static LevelPack map(FileChannel channel, long start, long length) throws IOException {
+        try {
+            return new LevelPack(channel.map(FileChannel.MapMode.READ_ONLY, start, length));
+        } catch (IllegalArgumentException ex) {
+            throw new IOException("not a level pack", ex);
+        }
+    }
+
+    /**
+     * @return the number of levels in the pack
+     */
+    public int getLevelCount() { return levelCount; }
+
+    /**
+     * Gets a level, only reading where it is, how many walls it has, and the
+     * frames of its scripted walls (to check they are in order).
+     * @param i the index of the level
+     * @return the level
+     * @throws IllegalArgumentException if the level is damaged
+     */
+    public Level getLevel(int i) {
+        if (i < 0 || i >= levelCount) { throw new IndexOutOfBoundsException("no level " + i); }
+        int offset = data.getInt(HEADER_SIZE + 8 * i), length = data.getInt(HEADER_SIZE + 8 * i + 4);
+        if (offset < 0 || length < 0 || (long) offset + length > data.capacity()) {
+            throw new IllegalArgumentException("level " + i + " is outside of the pack");
+        }
+        return new Level(data, offset, length);
+    }
+}
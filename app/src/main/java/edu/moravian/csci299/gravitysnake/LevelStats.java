@@ -0,0 +1,141 @@
+package edu.moravian.csci299.gravitysnake;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Base64;
+import android.util.Log;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The statistics of all of the games played on one level: the number of
+ * games, and the mean and percentiles of the scores and of how long the snake
+ * survived. The scores and times are kept in QuantileSketches so the stats
+ * take the same small amount of space no matter how many games were played.
+ *
+ * The stats of each level are saved in SharedPreferences as a single string
+ * holding both sketches.
+ */
+public class LevelStats {
+    /** The scores of the games */
+    private final QuantileSketch scores;
+
+    /** How long the snake survived in each game, in seconds */
+    private final QuantileSketch times;
+
+    /** Create stats for a level with no games played. */
+    public LevelStats() { this(new QuantileSketch(), new QuantileSketch()); }
+
+    /**
+     * Create stats from existing sketches.
+     * @param scores the scores of the games
+     * @param times how long the snake survived in each game, in seconds
+     */
+    private LevelStats(QuantileSketch scores, QuantileSketch times) {
+        this.scores = scores;
+        this.times = times;
+    }
+
+    /**
+     * @return the number of games played
+     */
+    public long getGameCount() { return scores.getCount(); }
+
+    /**
+     * @return the scores of the games
+     */
+    public QuantileSketch getScores() { return scores; }
+
+    /**
+     * @return how long the snake survived in each game, in seconds
+     */
+    public QuantileSketch getTimes() { return times; }
+
+    /**
+     * Adds a finished game to the stats.
+     * @param score the score of the game
+     * @param seconds how long the snake survived, in seconds
+     */
+    public void addGame(int score, double seconds) {
+        scores.add(score);
+        times.add(seconds);
+    }
+
+    /**
+     * @return the stats saved as an array of bytes
+     */
+    public byte[] toBytes() {
+        ByteBuffer out = ByteBuffer.allocate(scores.getSavedSize() + times.getSavedSize());
+        scores.writeTo(out);
+        times.writeTo(out);
+        return out.array();
+    }
+
+    /**
+     * Loads stats saved with toBytes().
+     * @param bytes the saved stats
+     * @return the loaded stats
+     * @throws IllegalArgumentException if the bytes are not saved stats
+     */
+    public static LevelStats fromBytes(byte[] bytes) {
+        ByteBuffer in = ByteBuffer.wrap(bytes);
+        QuantileSketch scores = QuantileSketch.readFrom(in);
+        QuantileSketch times = QuantileSketch.readFrom(in);
+        return new LevelStats(scores, times);
+    }
+
+    /**
+     * Loads the stats for a level from a SharedPreferences.
+     * @param preferences where to get the stats from
+     * @param context the context this function is being called from
+     * @param level the level to get the stats of
+     * @return the stats for the level, empty if none were saved (or they
+     *         couldn't be read)
+     */
+    public static LevelStats load(SharedPreferences preferences, Context context, int level) {
+        String saved = preferences.getString(getKey(context, level), null);
+        if (saved != null) {
+            try {
+                return fromBytes(Base64.decode(saved, Base64.NO_WRAP));
+            } catch (IllegalArgumentException ex) {
+                Log.w("LevelStats", "could not read stats for level " + level, ex);
+            }
+        }
+        return new LevelStats();
+    }
+
+    /**
+     * Saves the stats for a level in a SharedPreferences.
+     * @param preferences where to save the stats to
+     * @param context the context this function is being called from
+     * @param level the level the stats are for
+     */
+    public void save(SharedPreferences preferences, Context context, int level) {
+        SharedPreferences.Editor editor = preferences.edit();
+        editor.putString(getKey(context, level), Base64.encodeToString(toBytes(), Base64.NO_WRAP));
+        editor.apply();
+    }
+
+    /**
+     * Adds a finished game to the saved stats of a level.
+     * @param preferences where the stats are saved
+     * @param context the context this function is being called from
+     * @param level the level that was played
+     * @param score the score of the game
+     * @param seconds how long the snake survived, in seconds
+     */
+    public static void addGame(SharedPreferences preferences, Context context, int level, int score, double seconds) {
+        LevelStats stats = load(preferences, context, level);
+        stats.addGame(score, seconds);
+        stats.save(preferences, context, level);
+    }
+
+    /**
+     * @param context the context this function is being called from
+     * @param level the level
+     * @return the SharedPreferences key for the stats of the level
+     */
+    private static String getKey(Context context, int level) {
+        return String.format(context.getString(R.string.stats_preference_key), level);
+    }
+}
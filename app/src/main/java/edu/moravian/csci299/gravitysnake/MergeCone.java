@@ -0,0 +1,117 @@
+package edu.moravian.csci299.gravitysnake;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Decides when the steps of a snake can be merged into one straight line.
+ * The line starts at a point and is stretched to each new step as long as
+ * every step merged into it stays within a tolerance of it. This is tracked
+ * as a cone of directions (from the start of the line) that the next step
+ * may be in, which gets narrower with each step merged, so each step is
+ * checked in constant time no matter how many came before it.
+ *
+ * Used both to store the body of a PolylineSnake and to pick the points to
+ * draw a snake with (BodyDecimator).
+ */
+public class MergeCone {
+    /** The number of bytes that writeTo() writes */
+    public final static int SAVED_SIZE = 1 + 2*4 + 4*8;
+
+    /** If there is a line being stretched */
+    private boolean active = false;
+
+    /** The start of the line, in px */
+    private float x, y;
+
+    /** The direction of the first step from the start, in radians */
+    private double angle;
+
+    /** The directions (relative to angle) the next step may be in, in radians */
+    private double low, high;
+
+    /** The distance from the start to the last step merged, in px */
+    private double dist;
+
+    /**
+     * @return true if there is a line being stretched
+     */
+    public boolean isActive() { return active; }
+
+    /** Stops stretching the line, the next step must start a new one. */
+    public void reset() { active = false; }
+
+    /**
+     * @return the distance from the start of the line to the last step
+     *         merged into it, in px
+     */
+    public double getDistance() { return dist; }
+
+    /**
+     * Starts a new line.
+     * @param fromX the x coordinate of the start of the line, in px
+     * @param fromY the y coordinate of the start of the line, in px
+     * @param toX the x coordinate of the first step of the line, in px
+     * @param toY the y coordinate of the first step of the line, in px
+     * @param tolerance the furthest any merged step may be from the line, in px
+     */
+    public void start(float fromX, float fromY, float toX, float toY, double tolerance) {
+        active = true;
+        x = fromX;
+        y = fromY;
+        dist = Math.hypot(toX - x, toY - y);
+        angle = Math.atan2(toY - y, toX - x);
+        high = halfWidth(dist, tolerance);
+        low = -high;
+    }
+
+    /**
+     * Tries to merge the next step into the line. It is merged if it is
+     * further along than the last step and within the cone, and then the
+     * cone gets narrower so the step stays within the tolerance.
+     * @param px the x coordinate of the step, in px
+     * @param py the y coordinate of the step, in px
+     * @param tolerance the furthest any merged step may be from the line, in px
+     * @return true if the step was merged and the line can be stretched to
+     *         it, false if a new line has to be started
+     */
+    public boolean stretch(float px, float py, double tolerance) {
+        if (!active) { return false; }
+        double d = Math.hypot(px - x, py - y);
+        double rel = Math.IEEEremainder(Math.atan2(py - y, px - x) - angle, 2 * Math.PI);
+        if (d <= dist || rel < low || rel > high) { return false; }
+        double half = halfWidth(d, tolerance);
+        low = Math.max(low, rel - half);
+        high = Math.min(high, rel + half);
+        dist = d;
+        return true;
+    }
+
+    /**
+     * Writes the whole state of the cone in a compact binary form, so a
+     * saved snake keeps merging steps exactly as it would have.
+     * @param out where to write the cone
+     */
+    public void writeTo(ByteBuffer out) {
+        out.put((byte) (active ? 1 : 0)).putFloat(x).putFloat(y);
+        out.putDouble(angle).putDouble(low).putDouble(high).putDouble(dist);
+    }
+
+    /**
+     * Replaces the state of the cone with one written by writeTo().
+     * @param in where to read the cone from
+     */
+    public void readFrom(ByteBuffer in) {
+        active = in.get() != 0;
+        x = in.getFloat();
+        y = in.getFloat();
+        angle = in.getDouble();
+        low = in.getDouble();
+        high = in.getDouble();
+        dist = in.getDouble();
+    }
+
+    /** @return half of the angle of the cone for a step at the given distance from the start */
+    private static double halfWidth(double dist, double tolerance) {
+        return dist == 0 ? Math.PI : Math.asin(Math.min(1.0, tolerance / dist));
+    }
+}
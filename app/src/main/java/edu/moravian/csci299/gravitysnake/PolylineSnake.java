@@ -0,0 +1,489 @@
+package edu.moravian.csci299.gravitysnake;
+
+import android.graphics.PointF;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static edu.moravian.csci299.gravitysnake.Util.*;
+
+/**
+ * A Snake that stores its body as a polyline instead of one point per step.
+ * Steps that continue in (nearly) a straight line just move the head vertex
+ * forward, so a long straight snake is only a couple of vertices. The tail is
+ * trimmed by arc length, and collisions are checked against the segments
+ * between the vertices. This makes the memory used and the cost of the
+ * collision checks depend on how twisty the snake is instead of how long it
+ * is.
+ *
+ * It moves, grows, and collides with the same rules as Snake, with the body
+ * being within MERGE_TOLERANCE_DP of the path a Snake would have. It is
+ * compact enough that collision checks just go through the segments, so it
+ * doesn't use a spatial index like Snake does.
+ */
+public class PolylineSnake implements SnakeBody {
+    /** The furthest any skipped step may be from the polyline, in dp */
+    public final static float MERGE_TOLERANCE_DP = 0.5f;
+
+    /**
+     * The vertices of the body. The tail is at index start and the head is
+     * at index end - 1. Each of these are stored using units of pixels.
+     */
+    private float[] xs = new float[16], ys = new float[16];
+    private int start = 0, end = 0;
+
+    /** Total length of the polyline, in px */
+    private double pathLength = 0.0;
+
+    /** The number of body pieces the polyline stands for (the same as the size of the body of a Snake) */
+    private int pieces = 1;
+
+    /** The number of body pieces to add while the snake is moving forward. */
+    private int piecesToAdd;
+
+    /**
+     * The distance to be travelled. This is needed since the snake actually
+     * moves in discrete steps instead of continuously.
+     */
+    private double distXToTravel = 0.0, distYToTravel = 0.0;
+
+    /**
+     * Decides if the head can move the head vertex while staying within the
+     * merge tolerance of every step merged into the last segment. Once the
+     * head leaves its cone a new vertex is started.
+     */
+    private final MergeCone cone = new MergeCone();
+
+    /** The number of vertices ever added, the head vertex was the last of them */
+    private int verticesAdded = 0;
+
+    /** The number of steps taken by the last move and the size of each of them, in px */
+    private int lastMoveSteps = 0;
+    private float lastStepX, lastStepY;
+
+    /** The location of the head, updated each time it is asked for */
+    private final PointF head = new PointF();
+
+    /** The body resampled into one point per step, null until asked for after each move */
+    private List<PointF> body;
+
+    /** Converts dp to px */
+    private final float dpToPxFactor;
+
+    /**
+     * Create the snake with the given initial position.
+     * @param initial the initial position
+     * @param dpToPxFactor the factor to convert dp to px
+     * @param startingLength the initial length of the snake (added over time)
+     */
+    public PolylineSnake(PointF initial, float dpToPxFactor, int startingLength) {
+        this.dpToPxFactor = dpToPxFactor;
+        this.piecesToAdd = startingLength;
+        addVertex(initial.x, initial.y);
+    }
+
+    /**
+     * @return the length of the snake, including any pieces yet to be added
+     */
+    @Override
+    public int getLength() { return pieces + piecesToAdd; }
+
+    /**
+     * @return the number of vertices used to store the body
+     */
+    public int getVertexCount() { return end - start; }
+
+    /**
+     * Gets one of the vertices used to store the body.
+     * @param i the index of the vertex, 0 is the tail and getVertexCount() - 1 the head
+     * @param out set to the location of the vertex
+     */
+    public void getVertex(int i, PointF out) { out.set(xs[start + i], ys[start + i]); }
+
+    /**
+     * Gets the number of vertices ever added to the snake. Vertex i (of
+     * getVertex()) was added as vertex getVerticesAdded() - getVertexCount() + i,
+     * so this tells which vertices are new since it was last asked.
+     * @return the number of vertices ever added
+     */
+    public int getVerticesAdded() { return verticesAdded; }
+
+    /**
+     * @return the number of body pieces that have been placed
+     */
+    @Override
+    public int getPieceCount() { return pieces; }
+
+    /**
+     * @return the number of steps taken by the last move
+     */
+    @Override
+    public int getLastMoveSteps() { return lastMoveSteps; }
+
+    /**
+     * Gets where the head was after one of the steps of the last move. The
+     * steps all go in a line back from the head.
+     * @param stepsBack the number of steps before the end of the last move,
+     *                  0 for the head, less than getLastMoveSteps()
+     * @param out set to the location of the head after that step
+     */
+    @Override
+    public void getLastMoveStep(int stepsBack, PointF out) {
+        out.set(xs[end - 1] - stepsBack * lastStepX, ys[end - 1] - stepsBack * lastStepY);
+    }
+
+    /**
+     * @return the number of bytes that writeTo() writes
+     */
+    @Override
+    public int getSavedSize() { return 3*4 + 3*8 + MergeCone.SAVED_SIZE + 2*4 * (end - start); }
+
+    /**
+     * Writes the whole state of the snake (the vertices, the movement still
+     * to be done, and the cone of the last segment) in a compact binary form.
+     * Read it back with PolylineSnake.readFrom().
+     * @param out where to write the snake
+     */
+    @Override
+    public void writeTo(ByteBuffer out) {
+        out.putInt(end - start).putInt(pieces).putInt(piecesToAdd);
+        out.putDouble(distXToTravel).putDouble(distYToTravel).putDouble(pathLength);
+        cone.writeTo(out);
+        for (int i = start; i < end; i++) { out.putFloat(xs[i]).putFloat(ys[i]); }
+    }
+
+    /**
+     * Reads a snake written by writeTo(). The cone of the last segment and
+     * the path length are saved too (adding up the segments again could be
+     * off in the last bits), so the snake merges and trims its steps exactly
+     * as it would have.
+     * @param in where to read the snake from
+     * @param dpToPxFactor the factor to convert dp to px
+     * @return the snake, exactly as it was written
+     */
+    public static PolylineSnake readFrom(ByteBuffer in, float dpToPxFactor) {
+        final int count = in.getInt();
+        if (count < 1) { throw new IllegalArgumentException("snake has no vertices"); }
+        final int pieces = in.getInt();
+        PolylineSnake snake = new PolylineSnake(new PointF(), dpToPxFactor, in.getInt());
+        snake.pieces = pieces;
+        snake.distXToTravel = in.getDouble();
+        snake.distYToTravel = in.getDouble();
+        snake.pathLength = in.getDouble();
+        snake.cone.readFrom(in);
+        snake.end = snake.verticesAdded = 0;
+        for (int i = 0; i < count; i++) { snake.addVertex(in.getFloat(), in.getFloat()); }
+        return snake;
+    }
+
+    /**
+     * @return the location of the head
+     */
+    @Override
+    public PointF getHead() {
+        head.set(xs[end - 1], ys[end - 1]);
+        return head;
+    }
+
+    /**
+     * Gets the body as one point per step, the same as a Snake would have.
+     * This is built from the polyline the first time it is asked for after
+     * each move, so it takes time and memory proportional to the length.
+     * Nothing that runs every frame uses it, the vertices (getVertex()) are
+     * enough for drawing.
+     * @return the list of body points currently in the snake
+     */
+    @Override
+    public List<PointF> getBody() {
+        if (body == null) { body = Collections.unmodifiableList(resample()); }
+        return body;
+    }
+
+    /**
+     * Moves the snake forward.
+     * @param direction the direction of movement, in radians
+     * @param distance the distance of the movement, in pixels
+     */
+    @Override
+    public void move(double direction, double distance) {
+        distXToTravel += Math.cos(direction) * distance;
+        distYToTravel += Math.sin(direction) * distance;
+
+        lastMoveSteps = 0;
+        final double stepDist = Snake.STEP_DISTANCE_DP * dpToPxFactor;
+        double distTotal = Math.hypot(distYToTravel, distXToTravel);
+        if (distTotal >= stepDist) {
+            double angle = Math.atan2(distYToTravel, distXToTravel);
+            float stepXDist = (float) (stepDist * Math.cos(angle));
+            float stepYDist = (float) (stepDist * Math.sin(angle));
+            lastStepX = stepXDist;
+            lastStepY = stepYDist;
+            while (distTotal >= stepDist) {
+                distTotal -= stepDist;
+                lastMoveSteps++;
+                step(xs[end - 1] + stepXDist, ys[end - 1] + stepYDist);
+                if (piecesToAdd == 0) {
+                    trimTail((pieces - 1) * stepDist);
+                } else {
+                    pieces++;
+                    piecesToAdd--;
+                }
+            }
+            distXToTravel = distTotal * Math.cos(angle);
+            distYToTravel = distTotal * Math.sin(angle);
+            body = null;
+        }
+    }
+
+    /**
+     * Moves the head to a new location, either by moving the head vertex if
+     * the new location is within the cone of the last segment or by adding a
+     * new vertex.
+     */
+    private void step(float x, float y) {
+        final int head = end - 1;
+        final double tolerance = MERGE_TOLERANCE_DP * dpToPxFactor;
+        if (cone.stretch(x, y, tolerance)) {
+            // Still straight enough, stretch the last segment
+            pathLength += Math.hypot(x - xs[head - 1], y - ys[head - 1]) -
+                    Math.hypot(xs[head] - xs[head - 1], ys[head] - ys[head - 1]);
+            xs[head] = x;
+            ys[head] = y;
+            return;
+        }
+
+        // Start a new segment from the current head
+        cone.start(xs[head], ys[head], x, y, tolerance);
+        pathLength += cone.getDistance();
+        addVertex(x, y);
+    }
+
+    /**
+     * Removes length from the tail end of the polyline until it is no longer
+     * than the given length.
+     */
+    private void trimTail(double targetLength) {
+        while (pathLength > targetLength && end - start > 1) {
+            double excess = pathLength - targetLength;
+            float dx = xs[start + 1] - xs[start], dy = ys[start + 1] - ys[start];
+            double segLength = Math.hypot(dx, dy);
+            if (segLength <= excess) {
+                start++; // the whole first segment goes
+                pathLength -= segLength;
+            } else {
+                float t = (float) (excess / segLength);
+                xs[start] += dx * t;
+                ys[start] += dy * t;
+                pathLength = targetLength;
+            }
+        }
+        if (end - start == 1) { cone.reset(); pathLength = 0; }
+    }
+
+    /** Adds a vertex as the new head, making room if needed. */
+    private void addVertex(float x, float y) {
+        if (end == xs.length) {
+            int count = end - start;
+            if (count * 2 > xs.length) { // more than half full, grow
+                float[] newXs = new float[xs.length * 2], newYs = new float[ys.length * 2];
+                System.arraycopy(xs, start, newXs, 0, count);
+                System.arraycopy(ys, start, newYs, 0, count);
+                xs = newXs;
+                ys = newYs;
+            } else { // mostly trimmed away, shift down
+                System.arraycopy(xs, start, xs, 0, count);
+                System.arraycopy(ys, start, ys, 0, count);
+            }
+            start = 0;
+            end = count;
+        }
+        xs[end] = x;
+        ys[end] = y;
+        end++;
+        verticesAdded++;
+    }
+
+    /**
+     * Walks the polyline from the head placing a point every step.
+     * @return the list of points
+     */
+    private List<PointF> resample() {
+        final double stepDist = Snake.STEP_DISTANCE_DP * dpToPxFactor;
+        List<PointF> points = new ArrayList<>(pieces);
+        points.add(new PointF(xs[end - 1], ys[end - 1]));
+        double along = stepDist; // distance along the current segment of the next point
+        for (int i = end - 1; i > start && points.size() < pieces; i--) {
+            float dx = xs[i - 1] - xs[i], dy = ys[i - 1] - ys[i];
+            double segLength = Math.hypot(dx, dy);
+            while (along <= segLength && points.size() < pieces) {
+                float t = (float) (along / segLength);
+                points.add(new PointF(xs[i] + dx * t, ys[i] + dy * t));
+                along += stepDist;
+            }
+            along -= segLength;
+        }
+        if (points.size() < pieces && end - start > 1) {
+            points.add(new PointF(xs[start], ys[start])); // merged segments are a little short, end on the tail
+        }
+        return points;
+    }
+
+    /**
+     * Increases the length of the snake.
+     * @param amount the amount to increase the length by
+     */
+    @Override
+    public void increaseLength(int amount) { piecesToAdd += amount; }
+
+    /**
+     * Checks if the snake head intersects itself, using the same rules as
+     * Snake but measuring against the segments instead of each step.
+     * @return true if the snake intersections itself
+     */
+    @Override
+    public boolean headIntersectsSelf() {
+        return intersectsSelf(xs[end - 1], ys[end - 1], Snake.SELF_SKIP * Snake.STEP_DISTANCE_DP * dpToPxFactor);
+    }
+
+    /**
+     * Checks if the head intersects itself at any of the steps taken during
+     * the last move. The steps are all in a line going back from the head,
+     * each is checked against the segments far enough behind it.
+     * @return true if the snake intersected itself during the last move
+     */
+    @Override
+    public boolean headPathIntersectsSelf() {
+        final double stepDist = Snake.STEP_DISTANCE_DP * dpToPxFactor;
+        for (int j = 0; j < Math.max(1, lastMoveSteps); j++) {
+            if (intersectsSelf(xs[end - 1] - j * lastStepX, ys[end - 1] - j * lastStepY, (j + Snake.SELF_SKIP) * stepDist)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks if a location on the body intersects the body further back.
+     * @param hx the x coordinate of the location, in px
+     * @param hy the y coordinate of the location, in px
+     * @param skip the length of the body, from the head, that doesn't count, in px
+     * @return true if the location intersects the rest of the body
+     */
+    private boolean intersectsSelf(float hx, float hy, double skip) {
+        final double range = 0.5 * Snake.BODY_PIECE_SIZE_DP * dpToPxFactor;
+        double walked = 0.0;
+        for (int i = end - 1; i > start; i--) {
+            float ax = xs[i], ay = ys[i], bx = xs[i - 1], by = ys[i - 1];
+            double segLength = Math.hypot(bx - ax, by - ay);
+            if (walked + segLength <= skip) { walked += segLength; continue; }
+            if (walked < skip) { // only the part of the segment after the skipped distance counts
+                float t = (float) ((skip - walked) / segLength);
+                ax += (bx - ax) * t;
+                ay += (by - ay) * t;
+            }
+            walked += segLength;
+            if (distanceToSegmentSquared(hx, hy, ax, ay, bx, by) < range*range) { return true; }
+        }
+        return false;
+    }
+
+    /**
+     * Checks if the snake head is "out of bounds", see Snake.
+     * @param width the width of the bounds in px
+     * @param height the height of the bounds in px
+     * @return true if the snake is out of bounds
+     */
+    @Override
+    public boolean headIsOutOfBounds(int width, int height) {
+        float x = xs[end - 1], y = ys[end - 1];
+        return x < 0 || y < 0 || x >= width || y >= height;
+    }
+
+    /**
+     * Checks if any segment of the snake intersects the given circular item.
+     * @param location the location of the item, in px
+     * @param radius the radius of the item, in px
+     * @return true if the snake intersections the given circular item
+     */
+    @Override
+    public boolean bodyIntersectsItem(PointF location, float radius) {
+        final double range = Snake.BODY_PIECE_SIZE_DP * dpToPxFactor + radius;
+        final float rangeSq = (float) (range * range);
+        if (end - start == 1) {
+            return distanceToSegmentSquared(location.x, location.y, xs[start], ys[start], xs[start], ys[start]) < rangeSq;
+        }
+        for (int i = start; i < end - 1; i++) {
+            if (distanceToSegmentSquared(location.x, location.y, xs[i], ys[i], xs[i + 1], ys[i + 1]) < rangeSq) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks if any segment of the snake is touched by a circle moving along
+     * a line segment.
+     * @param ax the x coordinate of the start of the segment, in px
+     * @param ay the y coordinate of the start of the segment, in px
+     * @param bx the x coordinate of the end of the segment, in px
+     * @param by the y coordinate of the end of the segment, in px
+     * @param radius the radius of the circle, in px
+     * @return true if the circle touches the snake anywhere along the segment
+     */
+    @Override
+    public boolean bodyIntersectsSegment(float ax, float ay, float bx, float by, float radius) {
+        final double range = Snake.BODY_PIECE_SIZE_DP * dpToPxFactor + radius;
+        final float rangeSq = (float) (range * range);
+        if (end - start == 1) { return distanceToSegmentSquared(xs[start], ys[start], ax, ay, bx, by) < rangeSq; }
+        for (int i = start; i < end - 1; i++) {
+            if (segmentsDistanceSquared(xs[i], ys[i], xs[i + 1], ys[i + 1], ax, ay, bx, by) < rangeSq) { return true; }
+        }
+        return false;
+    }
+
+    /**
+     * Checks if any part of the snake is touched by a circle moving along any
+     * of several line segments, in one pass over the lines of the body. Lines
+     * that are nowhere near the box around all of the segments are skipped
+     * without checking each segment.
+     * @param segments the start x, start y, end x, and end y of each segment, in px
+     * @param count the number of segments
+     * @param radius the radius of the circle, in px
+     * @return true if the circle touches the snake anywhere along any segment
+     */
+    @Override
+    public boolean bodyIntersectsAnySegment(float[] segments, int count, float radius) {
+        if (count == 0) { return false; }
+        final double range = Snake.BODY_PIECE_SIZE_DP * dpToPxFactor + radius;
+        final float rangeSq = (float) (range * range);
+        float left = Float.POSITIVE_INFINITY, top = Float.POSITIVE_INFINITY;
+        float right = Float.NEGATIVE_INFINITY, bottom = Float.NEGATIVE_INFINITY;
+        for (int j = 0; j < 4 * count; j += 2) {
+            left = Math.min(left, segments[j]);
+            right = Math.max(right, segments[j]);
+            top = Math.min(top, segments[j + 1]);
+            bottom = Math.max(bottom, segments[j + 1]);
+        }
+        left -= range;
+        top -= range;
+        right += range;
+        bottom += range;
+
+        for (int i = start; i < Math.max(start + 1, end - 1); i++) {
+            final int k = Math.min(i + 1, end - 1); // a single point is a line to itself
+            if (Math.max(xs[i], xs[k]) < left || Math.min(xs[i], xs[k]) > right ||
+                    Math.max(ys[i], ys[k]) < top || Math.min(ys[i], ys[k]) > bottom) {
+                continue;
+            }
+            for (int j = 0; j < 4 * count; j += 4) {
+                if (segmentsDistanceSquared(xs[i], ys[i], xs[k], ys[k], segments[j], segments[j + 1],
+                        segments[j + 2], segments[j + 3]) < rangeSq) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
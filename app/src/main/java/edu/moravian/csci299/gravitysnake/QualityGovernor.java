@@ -0,0 +1,118 @@
+package edu.moravian.csci299.gravitysnake;
+
+/**
+ * Picks how much drawing quality to give up so that each frame fits in the
+ * time between screen refreshes. It is told how long drawing each frame took
+ * (only the drawing, since that is the part the quality level changes), and
+ * when the recent frames are taking too long it steps down one quality level,
+ * and when they have been fast for a while it steps back up. The gap between
+ * too slow and fast enough, along with waiting for a full set of new frames
+ * after every change, keeps it from flipping back and forth between levels.
+ *
+ * The levels build on each other, so each level also includes everything
+ * given up by the levels before it.
+ */
+public class QualityGovernor {
+    /** Everything is drawn as nicely as possible */
+    public final static int LEVEL_FULL = 0;
+
+    /** Shapes are drawn without anti-aliasing */
+    public final static int LEVEL_NO_ANTI_ALIAS = 1;
+
+    /** The score display is updated less often */
+    public final static int LEVEL_SLOW_HUD = 2;
+
+    /** The snake body is drawn with fewer, longer lines that may be a bit further from its path */
+    public final static int LEVEL_FEWER_BODY_SAMPLES = 3;
+
+    /** Food and walls are drawn as plain circles instead of images */
+    public final static int LEVEL_SIMPLE_SPRITES = 4;
+
+    /** The lowest quality level */
+    public final static int MAX_LEVEL = LEVEL_SIMPLE_SPRITES;
+
+    /** Frames taking more than this fraction of the budget (on average) are too slow */
+    private final static double SLOW_FRACTION = 0.8;
+
+    /** Frames taking less than this fraction of the budget (on average) are fast enough to improve quality */
+    private final static double FAST_FRACTION = 0.4;
+
+    /** The number of recent frames that are averaged */
+    private final static int WINDOW = 30;
+
+    /** The number of windows in a row that must be fast before quality goes up */
+    private final static int FAST_WINDOWS_TO_IMPROVE = 4;
+
+    /** The time each frame may take, in ns */
+    private long frameBudgetNanos;
+
+    /** The time taken by the frames of the current window, in ns */
+    private long windowNanos;
+
+    /** The number of frames in the current window */
+    private int windowFrames;
+
+    /** The number of fast windows in a row */
+    private int fastWindows;
+
+    /** The current quality level */
+    private int level = LEVEL_FULL;
+
+    /**
+     * Create a governor at full quality.
+     * @param frameBudgetNanos the time each frame may take, in ns
+     */
+    public QualityGovernor(long frameBudgetNanos) { this.frameBudgetNanos = frameBudgetNanos; }
+
+    /**
+     * @return the current quality level, from LEVEL_FULL to MAX_LEVEL
+     */
+    public int getLevel() { return level; }
+
+    /**
+     * @return the time each frame may take, in ns
+     */
+    public long getFrameBudgetNanos() { return frameBudgetNanos; }
+
+    /**
+     * Changes the time each frame may take, for example when the refresh rate
+     * of the display is known. Starts measuring over.
+     * @param frameBudgetNanos the time each frame may take, in ns
+     */
+    public void setFrameBudgetNanos(long frameBudgetNanos) {
+        this.frameBudgetNanos = frameBudgetNanos;
+        startWindow();
+        fastWindows = 0;
+    }
+
+    /**
+     * Records how long drawing a frame took, possibly changing the quality level.
+     * @param frameNanos the time drawing the frame took, in ns
+     * @return the quality level to use for the next frame
+     */
+    public int recordFrame(long frameNanos) {
+        windowNanos += frameNanos;
+        if (++windowFrames < WINDOW) { return level; }
+
+        final double average = (double) windowNanos / windowFrames;
+        if (average > SLOW_FRACTION * frameBudgetNanos) {
+            fastWindows = 0;
+            if (level < MAX_LEVEL) { level++; }
+        } else if (average < FAST_FRACTION * frameBudgetNanos) {
+            if (++fastWindows >= FAST_WINDOWS_TO_IMPROVE && level > LEVEL_FULL) {
+                level--;
+                fastWindows = 0;
+            }
+        } else {
+            fastWindows = 0;
+        }
+        startWindow();
+        return level;
+    }
+
+    /** Starts a new window of frames. */
+    private void startWindow() {
+        windowNanos = 0;
+        windowFrames = 0;
+    }
+}
@@ -0,0 +1,232 @@
+package edu.moravian.csci299.gravitysnake;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Keeps a summary of a stream of non-negative values that can estimate any
+ * percentile of them, using the same small amount of memory whether it has
+ * seen ten values or a million.
+ *
+ * Values are counted in buckets whose edges grow by a constant factor, so
+ * every estimate is within RELATIVE_ACCURACY of the real value (values below
+ * 1 are all counted together as 0). Adding a value just bumps the count of
+ * its bucket. The count, mean, min, and max are kept exactly.
+ *
+ * The sketch is saved as a compact array of bytes where only the buckets
+ * that have been used take up space.
+ */
+public class QuantileSketch {
+    /** How far (as a fraction) an estimated percentile may be from the real value */
+    public final static double RELATIVE_ACCURACY = 0.02;
+
+    /** The number of buckets, enough for values up to about 10^9 */
+    private final static int BUCKETS = 512;
+
+    /** The version of the saved format */
+    private final static byte VERSION = 1;
+
+    /** The factor between the edges of each bucket */
+    private final static double GAMMA = (1 + RELATIVE_ACCURACY) / (1 - RELATIVE_ACCURACY);
+
+    /** Used to find the bucket of a value */
+    private final static double LOG_GAMMA = Math.log(GAMMA);
+
+    /** The number of values in each bucket, bucket i holds values in (GAMMA^(i-1), GAMMA^i] */
+    private final long[] counts = new long[BUCKETS];
+
+    /** The number of values below 1 */
+    private long zeroCount;
+
+    /** The number of values, and their sum, min, and max */
+    private long count;
+    private double sum;
+    private double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+
+    /**
+     * Adds a value to the sketch.
+     * @param value the value, negative values are counted as 0
+     */
+    public void add(double value) {
+        value = Math.max(0, value);
+        if (value < 1) {
+            zeroCount++;
+        } else {
+            counts[Math.min(BUCKETS - 1, (int) Math.ceil(Math.log(value) / LOG_GAMMA))]++;
+        }
+        count++;
+        sum += value;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    /**
+     * @return the number of values added
+     */
+    public long getCount() { return count; }
+
+    /**
+     * @return the mean of the values added, or 0 if there are none
+     */
+    public double getMean() { return count == 0 ? 0 : sum / count; }
+
+    /**
+     * @return the smallest value added, or 0 if there are none
+     */
+    public double getMin() { return count == 0 ? 0 : min; }
+
+    /**
+     * @return the largest value added, or 0 if there are none
+     */
+    public double getMax() { return count == 0 ? 0 : max; }
+
+    /**
+     * Estimates a percentile of the values added.
+     * @param q the quantile to get, from 0 (the min) to 1 (the max), for
+     *          example 0.9 for the 90th percentile
+     * @return the estimated value at that quantile, or 0 if there are none
+     */
+    public double getQuantile(double q) {
+        if (count == 0) { return 0; }
+        final long rank = (long) (Math.max(0, Math.min(1, q)) * (count - 1));
+        long seen = zeroCount;
+        if (rank < seen) { return getMin(); }
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (rank < seen) {
+                // The middle of the bucket is within the accuracy of every value in it
+                double estimate = 2 * Math.pow(GAMMA, i) / (GAMMA + 1);
+                return Math.max(min, Math.min(max, estimate));
+            }
+        }
+        return max;
+    }
+
+    /**
+     * @return the sketch saved as an array of bytes
+     */
+    public byte[] toBytes() {
+        ByteBuffer out = ByteBuffer.allocate(getSavedSize());
+        writeTo(out);
+        return out.array();
+    }
+
+    /**
+     * @return the number of bytes writeTo() will write
+     */
+    public int getSavedSize() {
+        int size = 1 + 3 * 8 + varLongSize(count) + varLongSize(zeroCount);
+        int used = 0, last = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            if (counts[i] != 0) {
+                size += varLongSize(i - last) + varLongSize(counts[i]);
+                last = i;
+                used++;
+            }
+        }
+        return size + varLongSize(used);
+    }
+
+    /**
+     * Saves the sketch. Only the buckets that have been used are written,
+     * each as the distance from the last used bucket followed by its count.
+     * @param out where to write the sketch
+     */
+    public void writeTo(ByteBuffer out) {
+        out.put(VERSION);
+        putVarLong(out, count);
+        out.putDouble(sum).putDouble(getMin()).putDouble(getMax());
+        putVarLong(out, zeroCount);
+        int used = 0;
+        for (long c : counts) { if (c != 0) { used++; } }
+        putVarLong(out, used);
+        int last = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            if (counts[i] != 0) {
+                putVarLong(out, i - last);
+                putVarLong(out, counts[i]);
+                last = i;
+            }
+        }
+    }
+
+    /**
+     * Loads a sketch saved with toBytes().
+     * @param bytes the saved sketch
+     * @return the loaded sketch
+     * @throws IllegalArgumentException if the bytes are not a saved sketch
+     */
+    public static QuantileSketch fromBytes(byte[] bytes) { return readFrom(ByteBuffer.wrap(bytes)); }
+
+    /**
+     * Loads a sketch saved with writeTo().
+     * @param in where to read the sketch from
+     * @return the loaded sketch
+     * @throws IllegalArgumentException if the data is not a saved sketch
+     */
+    public static QuantileSketch readFrom(ByteBuffer in) {
+        try {
+            if (in.get() != VERSION) { throw new IllegalArgumentException("unknown sketch version"); }
+            QuantileSketch sketch = new QuantileSketch();
+            sketch.count = getVarLong(in);
+            sketch.sum = in.getDouble();
+            double min = in.getDouble(), max = in.getDouble();
+            if (sketch.count > 0) {
+                sketch.min = min;
+                sketch.max = max;
+            }
+            sketch.zeroCount = getVarLong(in);
+            long total = sketch.zeroCount;
+            int bucket = 0;
+            for (long used = getVarLong(in); used > 0; used--) {
+                bucket += (int) getVarLong(in);
+                if (bucket < 0 || bucket >= BUCKETS) { throw new IllegalArgumentException("bad sketch bucket"); }
+                sketch.counts[bucket] = getVarLong(in);
+                total += sketch.counts[bucket];
+            }
+            if (total != sketch.count) { throw new IllegalArgumentException("sketch counts don't add up"); }
+            return sketch;
+        } catch (BufferUnderflowException ex) {
+            throw new IllegalArgumentException("sketch is cut short", ex);
+        }
+    }
+
+    /**
+     * @param value a non-negative number
+     * @return the number of bytes putVarLong() uses for the number
+     */
+    private static int varLongSize(long value) {
+        int size = 1;
+        while ((value >>>= 7) != 0) { size++; }
+        return size;
+    }
+
+    /**
+     * Writes a non-negative number using 7 bits per byte, so small numbers
+     * only take one byte.
+     * @param out where to write the number
+     * @param value the number
+     */
+    private static void putVarLong(ByteBuffer out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    /**
+     * Reads a number written by putVarLong().
+     * @param in where to read the number from
+     * @return the number
+     */
+    private static long getVarLong(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) { return value; }
+        }
+        throw new IllegalArgumentException("bad number in sketch");
+    }
+}
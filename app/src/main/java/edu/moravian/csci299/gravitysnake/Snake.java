@@ -1,9 +1,10 @@
 package edu.moravian.csci299.gravitysnake;
 import android.graphics.PointF;
 
-import java.util.ArrayList;
-import java.util.Collections;
+import java.nio.ByteBuffer;
+import java.util.AbstractList;
 import java.util.List;
+import java.util.function.IntPredicate;
 
 import static edu.moravian.csci299.gravitysnake.Util.*;
 
@@ -15,18 +16,44 @@ import static edu.moravian.csci299.gravitysnake.Util.*;
  * NOTE: This class is complete, but you may to need look over the public
  * methods to use them.
  */
-public class Snake {
+public class Snake implements SnakeBody {
     /** Radius of each body piece in dp */
     public final static float BODY_PIECE_SIZE_DP = 15f;
 
     /** Distance that is moved each actual movement, in dp */
     public final static float STEP_DISTANCE_DP = 2.5f;
 
+    /** Number of pieces right behind the head that never count as the head hitting itself */
+    final static int SELF_SKIP = 20;
+
+    /** The low bits of an id in a shared spatial index that hold which snake the point belongs to */
+    private final static int OWNER_BITS = 8;
+    private final static int OWNER_MASK = (1 << OWNER_BITS) - 1;
+
+    /** The most snakes that can share one spatial index */
+    public final static int MAX_SHARED_OWNERS = 1 << OWNER_BITS;
+
     /**
-     * The points that make up the body. The point at position 0 is the head.
-     * Each of these points are stored using units of pixels
+     * The points that make up the body, in a circular buffer whose length is
+     * a power of 2. The head is at headPos and the rest of the body follows
+     * it (wrapping around), so adding a head and removing the tail never
+     * moves the other points. Each of these points are stored using units of
+     * pixels
      */
-    private final List<PointF> body = new ArrayList<>();
+    private PointF[] ring = new PointF[64];
+    private int headPos = 0, size = 0;
+
+    /** The body as a list, the point at position 0 is the head */
+    private final List<PointF> body = new AbstractList<PointF>() {
+        @Override
+        public PointF get(int i) {
+            if (i < 0 || i >= size) { throw new IndexOutOfBoundsException("index " + i + ", size " + size); }
+            return ring[(headPos + i) & (ring.length - 1)];
+        }
+
+        @Override
+        public int size() { return size; }
+    };
 
     /**
      * The distance to be travelled. This is needed since the snake actually
@@ -45,6 +72,25 @@ public class Snake {
      */
     private final float dpToPxFactor;
 
+    /**
+     * Number of steps the snake has taken since it was made. The body point
+     * at position i was placed at step headSequence - i, which is the id it
+     * has in the spatial index (see idOf() for a shared index).
+     */
+    private int headSequence = 0;
+
+    /** Optional index of all of the body points, kept up to date as the snake moves */
+    private SpatialGrid index;
+
+    /** The number the points are tagged with in a shared index, -1 if the index is only this snake's */
+    private int owner = -1;
+
+    /** Only passes the points of this snake in a shared index, null if the index is only this snake's */
+    private IntPredicate ownPoints;
+
+    /** The number of steps taken by the last move */
+    private int lastMoveSteps = 0;
+
     /**
      * Create the snake with the given initial position.
      * @param initial the initial position
@@ -52,7 +98,7 @@ public class Snake {
      * @param startingLength the initial length of the snake (added over time)
      */
     public Snake(PointF initial, float dpToPxFactor, int startingLength) {
-        body.add(initial);
+        addTail(initial);
         this.dpToPxFactor = dpToPxFactor;
         this.piecesToAdd = startingLength;
     }
@@ -60,24 +106,211 @@ public class Snake {
     /**
      * @return the length of the snake, including any pieces yet to be added
      */
+    @Override
     public int getLength() { return body.size() + piecesToAdd; }
 
     /**
-     * @return the list of body points currently in the snake
+     * @return the list of body points currently in the snake, it can't be
+     *         changed and follows the snake as it moves
+     */
+    @Override
+    public List<PointF> getBody() { return body; }
+
+    /**
+     * @return the location of the head
+     */
+    @Override
+    public PointF getHead() { return body.get(0); }
+
+    /**
+     * @return the number of body pieces that have been placed, which is less
+     *         than the length while the snake is still growing
+     */
+    @Override
+    public int getPieceCount() { return body.size(); }
+
+    /**
+     * @return the number of steps the head has taken, the body piece at
+     *         position i of getBody() was placed at step getHeadSequence() - i
+     */
+    public int getHeadSequence() { return headSequence; }
+
+    /**
+     * @return the number of steps taken by the last move
      */
-    public List<PointF> getBody() { return Collections.unmodifiableList(body); }
+    @Override
+    public int getLastMoveSteps() { return lastMoveSteps; }
+
+    /**
+     * Gets where the head was after one of the steps of the last move.
+     * @param stepsBack the number of steps before the end of the last move,
+     *                  0 for the head, less than getLastMoveSteps()
+     * @param out set to the location of the head after that step
+     */
+    @Override
+    public void getLastMoveStep(int stepsBack, PointF out) {
+        PointF pt = body.get(stepsBack);
+        out.set(pt.x, pt.y);
+    }
+
+    /**
+     * @return the number of bytes that writeTo() writes
+     */
+    @Override
+    public int getSavedSize() { return 3*4 + 2*8 + 2*4 * body.size(); }
+
+    /**
+     * Writes the whole state of the snake (the body and the movement still to
+     * be done) in a compact binary form. Read it back with readFrom().
+     * @param out where to write the snake
+     */
+    @Override
+    public void writeTo(ByteBuffer out) {
+        out.putInt(body.size()).putInt(piecesToAdd).putInt(headSequence);
+        out.putDouble(distXToTravel).putDouble(distYToTravel);
+        for (int i = 0; i < body.size(); i++) { out.putFloat(body.get(i).x).putFloat(body.get(i).y); }
+    }
+
+    /**
+     * Reads a snake written by writeTo().
+     * @param in where to read the snake from
+     * @param dpToPxFactor the factor to convert dp to px
+     * @return the snake, exactly as it was written
+     */
+    public static Snake readFrom(ByteBuffer in, float dpToPxFactor) {
+        final int count = in.getInt();
+        if (count < 1) { throw new IllegalArgumentException("snake has no body"); }
+        Snake snake = new Snake(new PointF(), dpToPxFactor, in.getInt());
+        snake.headSequence = in.getInt();
+        snake.distXToTravel = in.getDouble();
+        snake.distYToTravel = in.getDouble();
+        snake.body.get(0).set(in.getFloat(), in.getFloat());
+        for (int i = 1; i < count; i++) { snake.addTail(new PointF(in.getFloat(), in.getFloat())); }
+        return snake;
+    }
+
+    /** Makes room for one more body point, unwrapping the circular buffer into a bigger one if needed. */
+    private void ensureRoom() {
+        if (size < ring.length) { return; }
+        PointF[] bigger = new PointF[2 * ring.length];
+        for (int i = 0; i < size; i++) { bigger[i] = ring[(headPos + i) & (ring.length - 1)]; }
+        ring = bigger;
+        headPos = 0;
+    }
+
+    /** Adds a point to the front of the body, it becomes the head. */
+    private void addHead(PointF pt) {
+        ensureRoom();
+        headPos = (headPos - 1) & (ring.length - 1);
+        ring[headPos] = pt;
+        size++;
+    }
+
+    /** Adds a point to the back of the body, it becomes the tail. */
+    private void addTail(PointF pt) {
+        ensureRoom();
+        ring[(headPos + size) & (ring.length - 1)] = pt;
+        size++;
+    }
+
+    /** @return the tail, after removing it from the body */
+    private PointF removeTail() {
+        final int pos = (headPos + size - 1) & (ring.length - 1);
+        PointF tail = ring[pos];
+        ring[pos] = null;
+        size--;
+        return tail;
+    }
+
+    /**
+     * Starts keeping all of the body points in a spatial index. Collision
+     * checks against the body then only look at the points near the item
+     * instead of the whole body. The index must cover the whole world.
+     * @param index the empty index to keep the body points in
+     */
+    public void setSpatialIndex(SpatialGrid index) { useIndex(index, -1); }
+
+    /**
+     * Starts keeping all of the body points in a spatial index shared with
+     * other snakes, for example all of the snakes of an arena. Each point is
+     * tagged with the owner (see getOwner()) so one query can check all of
+     * the snakes at once, and this snake's own checks only count its own
+     * points. The index must cover the whole world, and the snakes sharing
+     * it must not move at the same time.
+     * @param index the index to keep the body points in
+     * @param owner the number of this snake, from 0 to MAX_SHARED_OWNERS - 1
+     *              and different for each snake sharing the index
+     */
+    public void shareSpatialIndex(SpatialGrid index, int owner) {
+        if (owner < 0 || owner >= MAX_SHARED_OWNERS) { throw new IllegalArgumentException("bad owner " + owner); }
+        useIndex(index, owner);
+    }
+
+    /**
+     * Takes all of the body points out of the spatial index and stops using
+     * it, for example once a snake in an arena has died.
+     */
+    public void leaveSpatialIndex() {
+        if (index == null) { return; }
+        for (int i = 0; i < body.size(); i++) {
+            index.remove(idOf(headSequence - i), body.get(i).x, body.get(i).y);
+        }
+        index = null;
+        owner = -1;
+        ownPoints = null;
+    }
+
+    /**
+     * @param id the id of a point in an index shared by several snakes
+     * @return the owner of the snake the point belongs to
+     */
+    public static int getOwner(int id) { return id & OWNER_MASK; }
+
+    /**
+     * Starts keeping all of the body points in a spatial index.
+     * @param index the index to keep the body points in
+     * @param owner the number to tag the points with, -1 if the index is only this snake's
+     */
+    private void useIndex(SpatialGrid index, int owner) {
+        this.index = index;
+        this.owner = owner;
+        ownPoints = owner < 0 ? null : id -> getOwner(id) == owner;
+        for (int i = 0; i < body.size(); i++) {
+            index.insert(idOf(headSequence - i), body.get(i).x, body.get(i).y);
+        }
+    }
+
+    /**
+     * @param seq the step a body point was placed at
+     * @return the id of the point in the spatial index: the step, with the
+     *         owner in the low bits if the index is shared
+     */
+    private int idOf(int seq) { return owner < 0 ? seq : seq << OWNER_BITS | owner; }
+
+    /**
+     * @param id the id of a point in the spatial index
+     * @param last the last step that counts
+     * @return true if the point is this snake's and was placed at or before the step
+     */
+    private boolean isOwnStepUpTo(int id, int last) {
+        if (owner < 0) { return id <= last; }
+        // Only the low bits of the steps fit in a shared id, so compare the difference in case they wrapped around
+        return getOwner(id) == owner && (last << OWNER_BITS) - (id & ~OWNER_MASK) >= 0;
+    }
 
     /**
      * Moves the snake forward.
      * @param direction the direction of movement, in radians
      * @param distance the distance of the movement, in pixels
      */
+    @Override
     public void move(double direction, double distance) {
         // Update the distance to be travelled
         distXToTravel += Math.cos(direction) * distance;
         distYToTravel += Math.sin(direction) * distance;
 
         // Move the snake as much of the distance as possible
+        lastMoveSteps = 0;
         final double stepDist = STEP_DISTANCE_DP * dpToPxFactor; // distance of each step
         double distTotal = Math.hypot(distYToTravel, distXToTravel); // total distance to travel
         if (distTotal >= stepDist) {
@@ -87,15 +320,19 @@ public class Snake {
             while (distTotal >= stepDist) { // while the distance to travel is at least one step
                 // Remove this distance from the remaining distance to travel
                 distTotal -= stepDist;
+                lastMoveSteps++;
 
                 // Create and add the new head to the start of the body
                 PointF newHead = new PointF(body.get(0).x, body.get(0).y);
                 newHead.offset((float) stepXDist, (float) stepYDist);
-                body.add(0, newHead);
+                addHead(newHead);
+                headSequence++;
+                if (index != null) { index.insert(idOf(headSequence), newHead.x, newHead.y); }
 
                 // Remove the tail (if there are no pieces to be added)
                 if (piecesToAdd == 0) {
-                    body.remove(body.size() - 1);
+                    PointF tail = removeTail();
+                    if (index != null) { index.remove(idOf(headSequence - body.size()), tail.x, tail.y); }
                 } else {
                     piecesToAdd -= 1; // the tail is the new piece
                 }
@@ -103,7 +340,7 @@ public class Snake {
 
             // Update the remaining distance
             distXToTravel = distTotal * Math.cos(angle);
-            distYToTravel = distTotal * Math.cos(angle);
+            distYToTravel = distTotal * Math.sin(angle);
         }
     }
 
@@ -113,6 +350,7 @@ public class Snake {
      * part to be placed.
      * @param amount the amount to increase the length by
      */
+    @Override
     public void increaseLength(int amount) { piecesToAdd += amount; }
 
     /**
@@ -123,9 +361,45 @@ public class Snake {
      *
      * @return true if the snake intersections itself
      */
+    @Override
     public boolean headIntersectsSelf() {
         // For more aggressive/accurate it should be "2 *" in the next line, not "0.5 *"
-        return anyWithinRange(body, body.get(0), 0.5 * BODY_PIECE_SIZE_DP * dpToPxFactor, 20);
+        final double range = 0.5 * BODY_PIECE_SIZE_DP * dpToPxFactor;
+        if (index != null) {
+            PointF head = body.get(0);
+            return index.anyWithinRange(head.x, head.y, range, id -> isOwnStepUpTo(id, headSequence - SELF_SKIP));
+        }
+        return anyWithinRange(body, body.get(0), range, SELF_SKIP);
+    }
+
+    /**
+     * Checks if the head intersects itself at any of the steps taken during
+     * the last move, not just where it ended up. When moving fast the head
+     * takes several steps each move and could otherwise pass right over the
+     * body. All of the steps lie on a line, so this is done as one check of
+     * that line against the body (with the same rules as
+     * headIntersectsSelf()).
+     *
+     * @return true if the snake intersected itself during the last move
+     */
+    @Override
+    public boolean headPathIntersectsSelf() {
+        if (headIntersectsSelf()) { return true; }
+        final int steps = lastMoveSteps;
+        final int skip = SELF_SKIP + steps - 1; // far enough behind every step of the move
+        if (steps < 2 || body.size() <= skip) { return false; }
+
+        final PointF first = body.get(steps - 1), head = body.get(0);
+        final double range = 0.5 * BODY_PIECE_SIZE_DP * dpToPxFactor;
+        if (index != null) {
+            return index.anyNearSegment(first.x, first.y, head.x, head.y, range, id -> isOwnStepUpTo(id, headSequence - skip));
+        }
+        final float rangeSq = (float) (range * range);
+        for (int i = skip; i < body.size(); i++) {
+            PointF pt = body.get(i);
+            if (distanceToSegmentSquared(pt.x, pt.y, first.x, first.y, head.x, head.y) < rangeSq) { return true; }
+        }
+        return false;
     }
 
     /**
@@ -156,6 +430,7 @@ public class Snake {
      * @param height the height of the bounds in px
      * @return true if the snake is out of bounds
      */
+    @Override
     public boolean headIsOutOfBounds(int width, int height) {
         PointF head = body.get(0);
         return head.x < 0 || head.y < 0 || head.x >= width || head.y >= height;
@@ -171,8 +446,59 @@ public class Snake {
      * @param radius the radius of the item, in px
      * @return true if the snake intersections the given circular item
      */
+    @Override
     public boolean bodyIntersectsItem(PointF location, float radius) {
-        return anyWithinRange(body, location, BODY_PIECE_SIZE_DP * dpToPxFactor + radius);
+        final double range = BODY_PIECE_SIZE_DP * dpToPxFactor + radius;
+        if (index != null) { return index.anyWithinRange(location.x, location.y, range, ownPoints); }
+        return anyWithinRange(body, location, range);
+    }
+
+    /**
+     * Checks if any part of the snake is touched by a circle moving along a
+     * line segment, for example a finger swiping across the screen.
+     * @param ax the x coordinate of the start of the segment, in px
+     * @param ay the y coordinate of the start of the segment, in px
+     * @param bx the x coordinate of the end of the segment, in px
+     * @param by the y coordinate of the end of the segment, in px
+     * @param radius the radius of the circle, in px
+     * @return true if the circle touches the snake anywhere along the segment
+     */
+    @Override
+    public boolean bodyIntersectsSegment(float ax, float ay, float bx, float by, float radius) {
+        final double range = BODY_PIECE_SIZE_DP * dpToPxFactor + radius;
+        if (index != null) { return index.anyNearSegment(ax, ay, bx, by, range, ownPoints); }
+        final float rangeSq = (float) (range * range);
+        for (int i = 0; i < body.size(); i++) {
+            PointF pt = body.get(i);
+            if (distanceToSegmentSquared(pt.x, pt.y, ax, ay, bx, by) < rangeSq) { return true; }
+        }
+        return false;
+    }
+
+    /**
+     * Checks if any part of the snake is touched by a circle moving along any
+     * of several line segments, with one query of the spatial index (if the
+     * snake has one) or one pass over the body for the whole batch.
+     * @param segments the start x, start y, end x, and end y of each segment, in px
+     * @param count the number of segments
+     * @param radius the radius of the circle, in px
+     * @return true if the circle touches the snake anywhere along any segment
+     */
+    @Override
+    public boolean bodyIntersectsAnySegment(float[] segments, int count, float radius) {
+        final double range = BODY_PIECE_SIZE_DP * dpToPxFactor + radius;
+        if (index != null) { return index.anyNearSegments(segments, count, range, ownPoints); }
+        final float rangeSq = (float) (range * range);
+        for (int i = 0; i < body.size(); i++) {
+            PointF pt = body.get(i);
+            for (int j = 0; j < 4 * count; j += 4) {
+                if (distanceToSegmentSquared(pt.x, pt.y, segments[j], segments[j + 1], segments[j + 2],
+                        segments[j + 3]) < rangeSq) {
+                    return true;
+                }
+            }
+        }
+        return false;
     }
 
     /**
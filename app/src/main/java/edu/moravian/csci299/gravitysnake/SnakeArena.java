@@ -0,0 +1,465 @@
+package edu.moravian.csci299.gravitysnake;
+
+import android.graphics.PointF;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * An arena version of the Snake Game where several snakes share the same
+ * food and walls. Each snake dies if it hits itself, the edge, a wall, or the
+ * body of any other snake. Some of the snakes can be bots that steer
+ * themselves towards the food, the rest are steered by whoever is playing.
+ *
+ * All of the bodies are kept in one spatial index, each point tagged with the
+ * snake it belongs to, so checking a head against every other body is a
+ * single query instead of one for each snake.
+ *
+ * Each update runs in phases so that the collisions can be checked in
+ * parallel while the result is always the same as processing the snakes one
+ * at a time:
+ *  1. move: every snake moves (and bots steer) in snake order, keeping the
+ *     shared index up to date one step at a time (only the new head and old
+ *     tail are touched)
+ *  2. collide: the path each head took is checked against the walls and the
+ *     shared index of the bodies, only reading, split across threads
+ *  3. resolve: deaths, food, and new walls are applied in snake order, and
+ *     the bodies of snakes that died leave the index
+ *
+ * New walls are placed like in SnakeGame: the frame of the next one is drawn
+ * ahead of time and waits on a TimingWheel instead of rolling for a wall
+ * every frame.
+ */
+public class SnakeArena {
+    /** The fewest snakes to bother splitting the work across threads for */
+    private final static int PARALLEL_THRESHOLD = 4;
+
+    /** The event of placing a new random wall */
+    private final static int SPAWN_WALL = 0;
+
+    /** The most a bot can turn each frame, in radians */
+    private final static double BOT_TURN_RATE = 0.08;
+
+    /** The random number generator for this arena, seeded so games can be replayed (only used in resolve) */
+    private final GameRandom random;
+
+    /** The width and height of the arena, in px */
+    private int width, height;
+
+    /** All of the snakes, players first and then bots */
+    private final List<Snake> snakes = new ArrayList<>();
+
+    /** The direction each snake is moving, in radians */
+    private double[] directions = new double[0];
+
+    /** The speed of each snake, in dp/frame */
+    private double[] speeds = new double[0];
+
+    /** The number of foods eaten by each snake */
+    private int[] scores = new int[0];
+
+    /** If each snake is still alive */
+    private boolean[] alive = new boolean[0];
+
+    /** If each snake is steered by the arena instead of a player */
+    private boolean[] bots = new boolean[0];
+
+    /** Where the head of each snake was before it moved, in px */
+    private float[] startXs = new float[0], startYs = new float[0];
+
+    /** Results of the collide phase for each snake, applied during resolve */
+    private boolean[] crashed = new boolean[0], ate = new boolean[0];
+
+    /** The number of snakes still alive */
+    private int aliveCount;
+
+    /** Location of the current food, in px */
+    private PointF food;
+
+    /** Locations of all of the walls, each in px */
+    private final List<PointF> walls = new ArrayList<>();
+
+    /** Index of every wall, ids are positions in the walls list */
+    private SpatialGrid wallIndex;
+
+    /** Index of the bodies of all of the living snakes, each point tagged with its snake's index (see Snake.getOwner()) */
+    private SpatialGrid bodyIndex;
+
+    /** Initial speed of each snake, in dp/frame */
+    private double initialSpeed = 2.5;
+
+    /** How much the speed of a snake increases each time it eats a food */
+    private double speedIncreasePerFood = 0.0;
+
+    /** Number of pieces each snake is at the beginning of each game */
+    private int startingLength = 25;
+
+    /** Number of pieces to add to a snake each time it eats a food */
+    private int lengthIncreasePerFood = 8;
+
+    /** Probability to place a new wall each frame */
+    private double wallPlacementProbability = 0.005;
+
+    /** Future wall spawns */
+    private final TimingWheel events = new TimingWheel(256);
+
+    /** Fires the events from the timing wheel */
+    private final TimingWheel.Listener eventListener = this::handleEvent;
+
+    /**
+     * Converts dp to px, for example, FOOD_SIZE_DP will always be multiplied
+     * by this value.
+     */
+    private float dpToPxFactor = 1f;
+
+    /**
+     * Create an arena. No game is running until startGame() is called.
+     * @param seed the seed for the random placement of food and walls
+     */
+    public SnakeArena(long seed) { random = new GameRandom(seed); }
+
+    /**
+     * Set the factor for converting dp measurements to px. This is the size of
+     * 1 dp in pixels.
+     * @param dpToPxFactor the conversion factor to go from dp to px
+     */
+    public void setDpToPxFactor(float dpToPxFactor) { this.dpToPxFactor = dpToPxFactor; }
+
+    /**
+     * Start the game with the snakes spread out in a circle around the middle
+     * of the arena. Can also be used to start a new game.
+     * @param width the width of the playing area in px
+     * @param height the height of the playing area in px
+     * @param players the number of snakes steered by players
+     * @param botCount the number of snakes steered by the arena
+     * @throws IllegalArgumentException if there are more than
+     *         Snake.MAX_SHARED_OWNERS snakes
+     */
+    public void startGame(int width, int height, int players, int botCount) {
+        final int count = players + botCount;
+        if (count > Snake.MAX_SHARED_OWNERS) { throw new IllegalArgumentException("too many snakes: " + count); }
+        this.width = width;
+        this.height = height;
+
+        snakes.clear();
+        directions = new double[count];
+        speeds = new double[count];
+        scores = new int[count];
+        alive = new boolean[count];
+        bots = new boolean[count];
+        startXs = new float[count];
+        startYs = new float[count];
+        crashed = new boolean[count];
+        ate = new boolean[count];
+        aliveCount = count;
+
+        // Each snake starts on a circle facing around it so they don't run into each other right away
+        final float spread = Math.min(width, height) / 3f;
+        final float cellSize = 2 * Snake.BODY_PIECE_SIZE_DP * dpToPxFactor;
+        bodyIndex = new SpatialGrid(width, height, cellSize);
+        for (int i = 0; i < count; i++) {
+            double angle = 2 * Math.PI * i / count;
+            PointF start = new PointF(
+                    width / 2f + spread * (float) Math.cos(angle),
+                    height / 2f + spread * (float) Math.sin(angle));
+            Snake snake = new Snake(start, dpToPxFactor, startingLength);
+            snake.shareSpatialIndex(bodyIndex, i);
+            snakes.add(snake);
+            directions[i] = angle + Math.PI / 2;
+            speeds[i] = initialSpeed;
+            alive[i] = true;
+            bots[i] = i >= players;
+        }
+
+        wallIndex = new SpatialGrid(width, height, cellSize);
+        walls.clear();
+        moveFood();
+        events.clear(0);
+        scheduleWallSpawn();
+    }
+
+    /**
+     * Update the arena by one frame.
+     * @return true if any snake is still alive, false if the game is over
+     */
+    public boolean update() {
+        if (aliveCount == 0) { return false; }
+
+        // Phase 1: move (and steer the bots), one at a time since they share the body index
+        for (int i = 0; i < snakes.size(); i++) {
+            if (!alive[i]) { continue; }
+            if (bots[i]) { directions[i] = steerBot(i); }
+            Snake snake = snakes.get(i);
+            startXs[i] = snake.getHead().x;
+            startYs[i] = snake.getHead().y;
+            snake.move(directions[i], speeds[i] * dpToPxFactor);
+        }
+
+        // Phase 2: collide, along the whole path of each head so fast snakes can't jump over anything
+        final float wallRange = (Snake.BODY_PIECE_SIZE_DP + SnakeGame.WALL_SIZE_DP) * dpToPxFactor;
+        final float foodRange = (Snake.BODY_PIECE_SIZE_DP + SnakeGame.FOOD_SIZE_DP) * dpToPxFactor;
+        forEachSnake(i -> {
+            crashed[i] = ate[i] = false;
+            if (!alive[i]) { return; }
+            Snake snake = snakes.get(i);
+            PointF head = snake.getHead();
+            crashed[i] = snake.headIsOutOfBounds(width, height) ||
+                    wallIndex.anyNearSegment(startXs[i], startYs[i], head.x, head.y, wallRange, null) ||
+                    snake.headPathIntersectsSelf() ||
+                    headHitsOtherSnake(i, head);
+            ate[i] = !crashed[i] &&
+                    Util.distanceToSegmentSquared(food.x, food.y, startXs[i], startYs[i], head.x, head.y) < foodRange*foodRange;
+        });
+
+        // Phase 3: resolve, in snake order so the lowest snake wins any ties for the food
+        boolean foodEaten = false;
+        for (int i = 0; i < snakes.size(); i++) {
+            if (crashed[i]) {
+                alive[i] = false;
+                aliveCount--;
+                snakes.get(i).leaveSpatialIndex();
+            } else if (ate[i] && !foodEaten) {
+                snakes.get(i).increaseLength(lengthIncreasePerFood);
+                speeds[i] += speedIncreasePerFood;
+                scores[i]++;
+                foodEaten = true;
+            }
+        }
+        if (foodEaten) { moveFood(); }
+
+        // Every so often add a new wall
+        events.advance(eventListener);
+
+        return aliveCount > 0;
+    }
+
+    /**
+     * Runs an action for every snake index, split across threads when there
+     * are enough snakes for it to be worth it. The action must only change
+     * the state of the snake it is given, and not the shared body index.
+     */
+    private void forEachSnake(IntConsumer action) {
+        IntStream indices = IntStream.range(0, snakes.size());
+        if (snakes.size() >= PARALLEL_THRESHOLD) { indices = indices.parallel(); }
+        indices.forEach(action);
+    }
+
+    /**
+     * Checks if the path a snake's head took during the last move hits the
+     * body of any other living snake, with one query of the shared body
+     * index that skips the snake's own points.
+     * @param i the index of the snake
+     * @param head the location of the head of the snake
+     * @return true if the head hits another snake
+     */
+    private boolean headHitsOtherSnake(int i, PointF head) {
+        final float range = Snake.BODY_PIECE_SIZE_DP * dpToPxFactor;
+        return bodyIndex.anyNearSegment(startXs[i], startYs[i], head.x, head.y, range, id -> {
+            int j = Snake.getOwner(id);
+            return j != i && alive[j];
+        });
+    }
+
+    /**
+     * Gets the new direction of a bot, turning it a little towards the food.
+     * @param i the index of the bot
+     * @return the new direction of the bot, in radians
+     */
+    private double steerBot(int i) {
+        PointF head = snakes.get(i).getHead();
+        double target = Math.atan2(food.y - head.y, food.x - head.x);
+        double turn = Math.IEEEremainder(target - directions[i], 2 * Math.PI);
+        return directions[i] + Math.max(-BOT_TURN_RATE, Math.min(BOT_TURN_RATE, turn));
+    }
+
+    /** Move the food to a new random location. */
+    private void moveFood() { food = randomPoint(SnakeGame.FOOD_SIZE_DP * dpToPxFactor); }
+
+    /**
+     * Schedule when the next wall is added, drawing the number of frames
+     * until a per-frame check would first pass.
+     */
+    private void scheduleWallSpawn() {
+        if (wallPlacementProbability <= 0) { return; }
+        events.schedule(random.nextGeometric(wallPlacementProbability), SPAWN_WALL, 0);
+    }
+
+    /**
+     * Handles an event from the timing wheel once it is due.
+     * @param event the type of event
+     * @param payload not used
+     */
+    private void handleEvent(int event, int payload) {
+        if (event == SPAWN_WALL) {
+            addWall();
+            scheduleWallSpawn();
+        }
+    }
+
+    /** Add a new random wall to the arena. */
+    private void addWall() {
+        PointF wall = randomPoint(SnakeGame.WALL_SIZE_DP * dpToPxFactor);
+        wallIndex.insert(walls.size(), wall.x, wall.y);
+        walls.add(wall);
+    }
+
+    /**
+     * Create a new random point that lies completely within the bounds of the
+     * arena and is not near any snake.
+     * @param size the size of the item, in px
+     */
+    private PointF randomPoint(float size) {
+        while (true) {
+            PointF pt = new PointF(
+                    random.nextFloat() * (width - 2*size) + size,
+                    random.nextFloat() * (height - 2*size) + size
+            );
+            if (!nearAnySnake(pt, 2*size)) { return pt; }
+        }
+    }
+
+    /**
+     * @param pt a location, in px
+     * @param radius the radius of an item at the location, in px
+     * @return true if the item would touch any living snake
+     */
+    private boolean nearAnySnake(PointF pt, float radius) {
+        for (int i = 0; i < snakes.size(); i++) {
+            if (alive[i] && snakes.get(i).bodyIntersectsItem(pt, radius)) { return true; }
+        }
+        return false;
+    }
+
+    /**
+     * @return true if the game has not yet been started ever
+     */
+    public boolean hasNotStarted() { return snakes.isEmpty(); }
+
+    /**
+     * @return the width of the arena, in px
+     */
+    public int getWidth() { return width; }
+
+    /**
+     * @return the height of the arena, in px
+     */
+    public int getHeight() { return height; }
+
+    /**
+     * @return the number of snakes in the arena, living or not
+     */
+    public int getSnakeCount() { return snakes.size(); }
+
+    /**
+     * @return the number of snakes still alive
+     */
+    public int getAliveCount() { return aliveCount; }
+
+    /**
+     * @param i the index of the snake
+     * @return true if the snake is still alive
+     */
+    public boolean isAlive(int i) { return alive[i]; }
+
+    /**
+     * @param i the index of the snake
+     * @return true if the snake is steered by the arena instead of a player
+     */
+    public boolean isBot(int i) { return bots[i]; }
+
+    /**
+     * @param i the index of the snake
+     * @return the number of foods eaten by the snake
+     */
+    public int getScore(int i) { return scores[i]; }
+
+    /**
+     * Gets the current movement direction of a snake in radians.
+     * @param i the index of the snake
+     * @return the direction of the snake in radians
+     */
+    public double getMovementDirection(int i) { return directions[i]; }
+
+    /**
+     * Sets the direction that a snake will move in the future. Bots ignore
+     * this since they steer themselves.
+     * @param i the index of the snake
+     * @param angle the new direction of the snake, in radians
+     */
+    public void setMovementDirection(int i, double angle) { directions[i] = angle; }
+
+    /**
+     * @param i the index of the snake
+     * @return list of all of the current body pieces of the snake
+     */
+    public List<PointF> getSnakeBodyLocations(int i) { return snakes.get(i).getBody(); }
+
+    /**
+     * @param i the index of the snake
+     * @return the snake
+     */
+    public Snake getSnake(int i) { return snakes.get(i); }
+
+    /**
+     * @return the current location of the food
+     */
+    public PointF getFoodLocation() { return food; }
+
+    /**
+     * @return list of all of the current wall location
+     */
+    public List<PointF> getWallLocations() { return Collections.unmodifiableList(walls); }
+
+    /**
+     * @return the initial speed of each snake in dp/frame
+     */
+    public double getInitialSpeed() { return initialSpeed; }
+
+    /**
+     * @param speed the new initial speed of each snake in dp/frame
+     */
+    public void setInitialSpeed(double speed) { this.initialSpeed = speed; }
+
+    /**
+     * @return the current speed increase per food eaten
+     */
+    public double getSpeedIncreasePerFood() { return speedIncreasePerFood; }
+
+    /**
+     * @param speedIncreasePerFood the new speed increase per food eaten
+     */
+    public void setSpeedIncreasePerFood(double speedIncreasePerFood) { this.speedIncreasePerFood = speedIncreasePerFood; }
+
+    /**
+     * @return the current starting length of each snake
+     */
+    public int getStartingLength() { return startingLength; }
+
+    /**
+     * @param startingLength the new starting length of each snake
+     */
+    public void setStartingLength(int startingLength) { this.startingLength = startingLength; }
+
+    /**
+     * @return the current amount a snake's length is increased per food
+     */
+    public int getLengthIncreasePerFood() { return lengthIncreasePerFood; }
+
+    /**
+     * @param lengthIncreasePerFood the new amount a snake's length is increased per food
+     */
+    public void setLengthIncreasePerFood(int lengthIncreasePerFood) { this.lengthIncreasePerFood = lengthIncreasePerFood; }
+
+    /**
+     * @return the current wall placement probability (per frame)
+     */
+    public double getWallPlacementProbability() { return wallPlacementProbability; }
+
+    /**
+     * @param prob the new wall placement probability (per frame)
+     */
+    public void setWallPlacementProbability(double prob) { wallPlacementProbability = prob; }
+}
@@ -0,0 +1,131 @@
+package edu.moravian.csci299.gravitysnake;
+
+import android.graphics.PointF;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * The body of a snake: how it moves and grows, and the collision checks
+ * against it. There are two ways of storing the body, Snake keeps one point
+ * per step and PolylineSnake keeps only the corners, and both follow the same
+ * rules (see Snake for the details of the rules).
+ */
+public interface SnakeBody {
+    /**
+     * @return the length of the snake, including any pieces yet to be added
+     */
+    int getLength();
+
+    /**
+     * @return the number of body pieces that have been placed, which is less
+     *         than the length while the snake is still growing
+     */
+    int getPieceCount();
+
+    /**
+     * @return the location of the head
+     */
+    PointF getHead();
+
+    /**
+     * Gets the body as one point per step, the head first. This may have to
+     * be built (see PolylineSnake), so it should only be used now and then,
+     * not every frame.
+     * @return the list of body points currently in the snake
+     */
+    List<PointF> getBody();
+
+    /**
+     * @return the number of steps taken by the last move
+     */
+    int getLastMoveSteps();
+
+    /**
+     * Gets where the head was after one of the steps of the last move.
+     * @param stepsBack the number of steps before the end of the last move,
+     *                  0 for the head, less than getLastMoveSteps()
+     * @param out set to the location of the head after that step
+     */
+    void getLastMoveStep(int stepsBack, PointF out);
+
+    /**
+     * @return the number of bytes that writeTo() writes
+     */
+    int getSavedSize();
+
+    /**
+     * Writes the whole state of the snake (the body and the movement still to
+     * be done) in a compact binary form. Each kind of body reads it back with
+     * its own static readFrom().
+     * @param out where to write the snake
+     */
+    void writeTo(ByteBuffer out);
+
+    /**
+     * Moves the snake forward.
+     * @param direction the direction of movement, in radians
+     * @param distance the distance of the movement, in pixels
+     */
+    void move(double direction, double distance);
+
+    /**
+     * Increases the length of the snake. This doesn't take effect right away,
+     * but only after the snake has moved far enough for the new body parts
+     * to be placed.
+     * @param amount the amount to increase the length by
+     */
+    void increaseLength(int amount);
+
+    /**
+     * @return true if the snake head intersects itself
+     */
+    boolean headIntersectsSelf();
+
+    /**
+     * @return true if the head intersected itself at any of the steps taken
+     *         during the last move
+     */
+    boolean headPathIntersectsSelf();
+
+    /**
+     * Checks if the snake head is "out of bounds" of a rectangle that goes
+     * from 0,0 to the given width and height.
+     * @param width the width of the bounds in px
+     * @param height the height of the bounds in px
+     * @return true if the snake is out of bounds
+     */
+    boolean headIsOutOfBounds(int width, int height);
+
+    /**
+     * Checks if the snake head or body intersects the given circular item.
+     * @param location the location of the item, in px
+     * @param radius the radius of the item, in px
+     * @return true if the snake intersections the given circular item
+     */
+    boolean bodyIntersectsItem(PointF location, float radius);
+
+    /**
+     * Checks if any part of the snake is touched by a circle moving along a
+     * line segment, for example a finger swiping across the screen.
+     * @param ax the x coordinate of the start of the segment, in px
+     * @param ay the y coordinate of the start of the segment, in px
+     * @param bx the x coordinate of the end of the segment, in px
+     * @param by the y coordinate of the end of the segment, in px
+     * @param radius the radius of the circle, in px
+     * @return true if the circle touches the snake anywhere along the segment
+     */
+    boolean bodyIntersectsSegment(float ax, float ay, float bx, float by, float radius);
+
+    /**
+     * Checks if any part of the snake is touched by a circle moving along any
+     * of several line segments, for example all of the finger movements since
+     * the last touch event. This looks through the body once for the whole
+     * batch instead of once for each segment.
+     * @param segments the start x, start y, end x, and end y of each segment, in px
+     * @param count the number of segments
+     * @param radius the radius of the circle, in px
+     * @return true if the circle touches the snake anywhere along any segment
+     */
+    boolean bodyIntersectsAnySegment(float[] segments, int count, float radius);
+}
@@ -1,25 +1,35 @@
 package edu.moravian.csci299.gravitysnake;
 
 import android.graphics.PointF;
+import android.graphics.RectF;
 
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
-import java.util.Random;
-
-import static edu.moravian.csci299.gravitysnake.Util.withinRange;
 
 /**
  * The Snake Game. Keeps track of the snake, the food, walls, the score, and
  * all of the difficultly settings (speed, starting length, length increase per
- * food, wall placement probability). Knows how to draw everything.
+ * food, wall placement probability). It has none of the drawing, that is done
+ * by SnakeGameRenderer using the getters and forEachItemNear().
  *
  * NOTE: This class is complete, but you may to need look over the public
  * methods to use them.
  */
 public class SnakeGame {
-    /** The one and only random number generator for any game */
-    private final static Random random = new Random();
+    /** The random number generator for the game, its state is saved with the game */
+    private final GameRandom random = new GameRandom(System.nanoTime());
+
+    /** Identifies a saved game ("SNKS") */
+    private final static int SAVE_MAGIC = 0x534E4B53;
+
+    /** Version of the saved game format */
+    private final static int SAVE_VERSION = 2;
+
+    /** Number of bytes in a saved game before the snake and items (2 bytes, 6 longs/doubles, 15 ints/floats) */
+    private final static int SAVE_HEADER_SIZE = 2 + 6*8 + 15*4;
 
     /** Radius of each food item in dp */
     public final static float FOOD_SIZE_DP = 15f;
@@ -30,21 +40,33 @@ public class SnakeGame {
     /** Touch "radius" in dp */
     public final static float TOUCH_SIZE_DP = 5;
 
-    /** The width and height of the game, in px */
+    /** Event for the timing wheel to add a new wall */
+    private final static int SPAWN_WALL = 0;
+
+    /** Event for the timing wheel to remove an item, the payload is the item id */
+    private final static int EXPIRE_ITEM = 1;
+
+    /** Event for the timing wheel to add scripted walls, the payload is the index of the first one */
+    private final static int SCRIPTED_WALL = 2;
+
+    /** The width and height of the game world, in px */
     private int width, height;
 
+    /** The width and height of the part of the world that can be seen at once, in px */
+    private int viewWidth, viewHeight;
+
+    /** How many times larger than the view the world is in each direction */
+    private float worldScale = 1f;
+
     /** If the game is over */
     private boolean gameOver = true;
 
     /** The snake moving around the game */
-    private Snake snake;
+    private SnakeBody snake;
 
     /** The direction the snake is moving */
     private double direction;
 
-    /** Location of the current food, in px */
-    private PointF food;
-
     /** Number of foods eaten (i.e. the score) */
     private int score = 0;
 
@@ -66,8 +88,35 @@ public class SnakeGame {
     /** Probability to place a new wall each frame */
     private double wallPlacementProbability = 0.005;
 
-    /** Locations of all of the walls, each in px */
-    private final List<PointF> walls = new ArrayList<>();
+    /** Number of frames each wall lasts, 0 for walls that last forever */
+    private int wallLifetime = 0;
+
+    /** Future wall spawns and item expiries */
+    private final TimingWheel events = new TimingWheel(256);
+
+    /** Frame the next wall is placed, -1 if walls are never placed */
+    private int nextWallFrame = -1;
+
+    /** Fires the events from the timing wheel */
+    private final TimingWheel.Listener eventListener = this::handleEvent;
+
+    /** The level with the walls placed at the start and the scripted walls, may be null */
+    private LevelPack.Level layout;
+
+    /** If the snake stores its body as a polyline (see PolylineSnake) */
+    private boolean compactBody = false;
+
+    /** Number of foods in the game at once */
+    private int foodCount = 1;
+
+    /** All of the food and walls */
+    private ItemStore items;
+
+    /** Ids of the walls to remove after a batch of touches, grown as needed */
+    private int[] touchedWalls = new int[16];
+
+    /** Streams the frames of the game to a spectator, may be null */
+    private SpectatorStream spectator;
 
     /**
      * Converts dp to px, for example, FOOD_SIZE_DP will always be multiplied
@@ -85,6 +134,11 @@ public class SnakeGame {
      */
     public int getScore() { return score; }
 
+    /**
+     * @return the number of frames the current game has been played for
+     */
+    public int getFramesPlayed() { return events.getFrame(); }
+
     /**
      * Set the factor for converting dp measurements to px. This is the size of
      * 1 dp in pixels.
@@ -94,22 +148,65 @@ public class SnakeGame {
         this.dpToPxFactor = dpToPxFactor;
     }
 
+    /**
+     * @return how many times larger than the view the world is
+     */
+    public float getWorldScale() { return worldScale; }
+
+    /**
+     * Sets how many times larger than the view the world is in each
+     * direction. With a scale above 1 the view only shows the part of the
+     * world around the snake (see getViewport()). Takes effect at the next
+     * start of a game.
+     * @param worldScale the new scale, at least 1
+     */
+    public void setWorldScale(float worldScale) { this.worldScale = Math.max(1f, worldScale); }
+
     /**
      * Start the game. Can also be used to start a new game if one has already begun.
-     * @param width the width of the playing area in px
-     * @param height the height of the playing area in px
+     * @param width the width of the view of the playing area in px
+     * @param height the height of the view of the playing area in px
      */
     public void startGame(int width, int height) {
-        this.width = width;
-        this.height = height;
-        snake = new Snake(new PointF(width / 2f, height / 2f), dpToPxFactor, startingLength);
+        this.viewWidth = width;
+        this.viewHeight = height;
+        this.width = (int) (width * worldScale);
+        this.height = (int) (height * worldScale);
+        PointF start = new PointF(this.width / 2f, this.height / 2f);
+        snake = compactBody ? new PolylineSnake(start, dpToPxFactor, startingLength) :
+                withIndex(new Snake(start, dpToPxFactor, startingLength));
+        items = new ItemStore(new SpatialGrid(this.width, this.height, getCellSize()));
+        attachSpectator();
         speed = initialSpeed;
         score = 0;
-        walls.clear();
-        moveFood();
+        events.clear(0);
+        if (layout != null) {
+            for (int i = 0; i < layout.getWallCount(); i++) {
+                addWall(layout.getWallX(i) * this.width, layout.getWallY(i) * this.height, 0);
+            }
+            scheduleScriptedWalls(0);
+        }
+        for (int i = 0; i < foodCount; i++) { addFood(); }
+        scheduleWallSpawn();
         gameOver = false;
     }
 
+    /**
+     * @return the size of the cells of the spatial indexes of the world, in px
+     */
+    private float getCellSize() { return 2 * Snake.BODY_PIECE_SIZE_DP * dpToPxFactor; }
+
+    /**
+     * Gives a snake that keeps a point for each step a spatial index covering
+     * the world, so the collision checks against it only look at nearby points.
+     * @param snake the snake
+     * @return the same snake
+     */
+    private Snake withIndex(Snake snake) {
+        snake.setSpatialIndex(new SpatialGrid(width, height, getCellSize()));
+        return snake;
+    }
+
     /**
      * Get the status of the game. The game is over if no game has ever been
      * started or if the snake has died and a new game has not yet started.
@@ -142,6 +239,17 @@ public class SnakeGame {
      */
     public int getCurrentLength() { return snake.getLength();  }
 
+    /**
+     * @return the number of foods in the game at once
+     */
+    public int getFoodCount() { return foodCount; }
+
+    /**
+     * @param foodCount the new number of foods in the game at once, takes
+     *                  effect at the next start of a game
+     */
+    public void setFoodCount(int foodCount) { this.foodCount = Math.max(1, foodCount); }
+
     /**
      * @return the initial speed of the snake in dp/frame
      */
@@ -173,10 +281,33 @@ public class SnakeGame {
     public double getWallPlacementProbability() { return wallPlacementProbability; }
 
     /**
-     * @param prob the new wall placement probability (per frame)
+     * @param prob the new wall placement probability (per frame), takes
+     *             effect once the next already scheduled wall is placed
      */
     public void setWallPlacementProbability(double prob) { wallPlacementProbability = prob; }
 
+    /**
+     * @return the number of frames each wall lasts, 0 if they last forever
+     */
+    public int getWallLifetime() { return wallLifetime; }
+
+    /**
+     * @param frames the new number of frames each new wall lasts, 0 to last forever
+     */
+    public void setWallLifetime(int frames) { wallLifetime = Math.max(0, frames); }
+
+    /**
+     * @return true if the snake stores its body as a polyline
+     */
+    public boolean hasCompactBody() { return compactBody; }
+
+    /**
+     * Sets if the snake stores its body as a polyline (see PolylineSnake)
+     * instead of one point per step. Takes effect at the next start of a game.
+     * @param compactBody true to use a polyline for the body
+     */
+    public void setCompactBody(boolean compactBody) { this.compactBody = compactBody; }
+
     /**
      * Gets the current movement direction of the snake in radians.
      * @return the direction of the snake in radians, from -pi to pi.
@@ -195,68 +326,208 @@ public class SnakeGame {
      * Update the game. This moves the snake, checks if the game is over (snake
      * hits itself, goes out of bounds, or hits a wall), checks if the snake
      * got the food, and possibly adds a new random wall piece.
+     *
+     * At high speeds the snake takes several steps each frame, so the checks
+     * cover the whole path the head took during the frame, not just where it
+     * ended up. Otherwise the head could jump over walls or food.
+     *
+     * If there is a spectator stream the changes made by the frame are handed
+     * to it at the end.
      * @return true if the game is still going, false if the game is over
      */
     public boolean update() {
         if (gameOver) { return false; }
+        final boolean going = updateGame();
+        if (spectator != null) { spectator.endFrame(this); }
+        return going;
+    }
+
+    /**
+     * Does the work of update().
+     * @return true if the game is still going, false if the game is over
+     */
+    private boolean updateGame() {
 
         // Move the snake
+        final float startX = snake.getHead().x, startY = snake.getHead().y;
         snake.move(direction, speed * dpToPxFactor); // NOTE: this does not take into account the frame rate
 
-        // Check if the snake has hit itself, gone out-of-bounds, or hit any of the walls
-        if (snake.headIntersectsSelf() || snake.headIsOutOfBounds(width, height) ||
-                snake.headIntersectsAnyItem(walls, WALL_SIZE_DP * dpToPxFactor)) {
+        // Check if the snake has hit itself or gone out-of-bounds (only the end matters, the path is straight)
+        if (snake.headPathIntersectsSelf() || snake.headIsOutOfBounds(width, height)) {
             gameOver = true;
             return false;
         }
 
-        // Check if the snake has "eaten" the food
-        if (snake.headIntersectsItem(food, FOOD_SIZE_DP * dpToPxFactor)) {
-            snake.increaseLength(lengthIncreasePerFood);
-            speed += speedIncreasePerFood;
-            moveFood();
-            score++;
+        // Find all of the items along the path of the head with one query of the index
+        PointF head = snake.getHead();
+        final int count = items.findOverlappingPath(startX, startY, head.x, head.y,
+                Snake.BODY_PIECE_SIZE_DP * dpToPxFactor);
+
+        // Check if the snake has hit any of the walls
+        for (int i = 0; i < count; i++) {
+            if (items.getType(items.getHit(i)) == ItemStore.WALL) {
+                gameOver = true;
+                return false;
+            }
         }
 
-        // Every so often add a new wall
-        if (random.nextFloat() < wallPlacementProbability) { addWall(); }
+        // Check if the snake has "eaten" any food
+        for (int i = 0; i < count; i++) {
+            if (items.getType(items.getHit(i)) == ItemStore.FOOD) {
+                snake.increaseLength(lengthIncreasePerFood);
+                speed += speedIncreasePerFood;
+                moveFood(items.getHit(i));
+                score++;
+            }
+        }
+
+        // Every so often add a new wall (and remove old ones)
+        events.advance(eventListener);
 
         return true;
     }
 
     /**
-     * "Touch" the game at a particular point. If the snake is touched
-     * anywhere, the game is over. If the food is touched, it moves. If a wall
-     * is touched, it is removed.
-     * @param pt the touched point
+     * "Touch" the game along a batch of line segments, such as every finger
+     * movement (including the in-between samples) since the last touch event.
+     * This is the same as touching every point along every segment: if the
+     * snake is touched anywhere the game is over, touched food moves, and
+     * touched walls are removed. The snake and the items are each checked
+     * once for the whole batch, and nothing is allocated unless food moves.
+     * @param segments the start x, start y, end x, and end y of each segment,
+     *                 in px (a single point is a segment with the same start
+     *                 and end)
+     * @param count the number of segments
      * @return true if the game is still going, false if the game is now over
      */
-    public boolean touched(PointF pt) {
+    public boolean touchedSegments(float[] segments, int count) {
         if (gameOver) { return false; }
+        final float radius = TOUCH_SIZE_DP * dpToPxFactor;
 
-        // Game over if the snake is touched
-        if (snake.bodyIntersectsItem(pt, TOUCH_SIZE_DP)) {
+        // Game over if the snake is touched anywhere along the batch
+        if (snake.bodyIntersectsAnySegment(segments, count, radius)) {
             gameOver = true;
             return false;
         }
 
-        // Move the food if touched
-        if (withinRange(pt, food, (FOOD_SIZE_DP + TOUCH_SIZE_DP) * dpToPxFactor)) {
-            moveFood();
+        // Move any food touched and remove all walls touched (by id, since removing moves the others)
+        final int found = items.findNearSegments(segments, count, radius);
+        if (touchedWalls.length < found) { touchedWalls = new int[Math.max(found, 2 * touchedWalls.length)]; }
+        int walls = 0;
+        for (int i = 0; i < found; i++) {
+            final int slot = items.getHit(i);
+            if (items.getType(slot) == ItemStore.FOOD) {
+                moveFood(slot);
+            } else if (items.getType(slot) == ItemStore.WALL) {
+                touchedWalls[walls++] = items.getId(slot);
+            }
         }
-
-        // Remove all walls within range of the touched point
-        final double dist = (WALL_SIZE_DP + TOUCH_SIZE_DP) * dpToPxFactor;
-        walls.removeIf(wall -> withinRange(wall, pt, dist));
+        for (int i = 0; i < walls; i++) { items.remove(touchedWalls[i]); }
 
         return true;
     }
 
-    /** Move the food to a new random location. */
-    private void moveFood() { food = randomPoint(FOOD_SIZE_DP * dpToPxFactor); }
+    /** Add a new food at a random location. */
+    private void addFood() {
+        PointF pt = randomPoint(FOOD_SIZE_DP * dpToPxFactor);
+        items.add(ItemStore.FOOD, pt.x, pt.y, FOOD_SIZE_DP * dpToPxFactor, ItemStore.NEVER);
+    }
+
+    /**
+     * Move a food to a new random location.
+     * @param slot the position of the food in the items
+     */
+    private void moveFood(int slot) {
+        PointF pt = randomPoint(FOOD_SIZE_DP * dpToPxFactor);
+        items.moveAt(slot, pt.x, pt.y);
+    }
 
     /** Add a new random wall to the game. */
-    private void addWall() { walls.add(randomPoint(WALL_SIZE_DP * dpToPxFactor)); }
+    private void addWall() {
+        PointF pt = randomPoint(WALL_SIZE_DP * dpToPxFactor);
+        addWall(pt.x, pt.y, wallLifetime);
+    }
+
+    /**
+     * Add a wall to the game at a particular location, scheduling its removal
+     * if it doesn't last forever.
+     * @param x the x coordinate of the wall, in px
+     * @param y the y coordinate of the wall, in px
+     * @param lifetime the number of frames the wall lasts, 0 for forever
+     */
+    public void addWall(float x, float y, int lifetime) {
+        if (lifetime > 0) {
+            int id = items.add(ItemStore.WALL, x, y, WALL_SIZE_DP * dpToPxFactor, events.getFrame() + lifetime);
+            events.schedule(lifetime, EXPIRE_ITEM, id);
+        } else {
+            items.add(ItemStore.WALL, x, y, WALL_SIZE_DP * dpToPxFactor, ItemStore.NEVER);
+        }
+    }
+
+    /**
+     * Sets the level whose walls are placed when a game starts and whose
+     * scripted walls appear during the game. Only the walls are used, the
+     * settings of the level must be set separately. When restoring a game
+     * the same level must be set first so the rest of its script still
+     * happens.
+     * @param layout the level, or null for only random walls
+     */
+    public void setLevelLayout(LevelPack.Level layout) { this.layout = layout; }
+
+    /**
+     * Schedule when the next scripted walls are added.
+     * @param next the index of the next scripted wall of the level
+     */
+    private void scheduleScriptedWalls(int next) {
+        if (layout == null || next >= layout.getScriptedWallCount()) { return; }
+        events.scheduleAt(Math.max(events.getFrame() + 1, layout.getScriptedWallFrame(next)), SCRIPTED_WALL, next);
+    }
+
+    /**
+     * Adds the scripted walls that are due, starting with one, then schedules
+     * the ones after them.
+     * @param first the index of the first scripted wall that is due
+     */
+    private void addScriptedWalls(int first) {
+        int i = first;
+        do {
+            addWall(layout.getScriptedWallX(i) * width, layout.getScriptedWallY(i) * height,
+                    layout.getScriptedWallLifetime(i));
+            i++;
+        } while (i < layout.getScriptedWallCount() && layout.getScriptedWallFrame(i) <= events.getFrame());
+        scheduleScriptedWalls(i);
+    }
+
+    /**
+     * Schedule when the next wall is added. Instead of checking the wall
+     * placement probability every frame, the number of frames until the
+     * check would first pass is drawn directly (from a geometric
+     * distribution), which places walls just as often.
+     */
+    private void scheduleWallSpawn() {
+        nextWallFrame = -1;
+        if (wallPlacementProbability <= 0) { return; }
+        nextWallFrame = events.getFrame() + random.nextGeometric(wallPlacementProbability);
+        events.scheduleAt(nextWallFrame, SPAWN_WALL, 0);
+    }
+
+    /**
+     * Handles an event from the timing wheel once it is due.
+     * @param event the type of event
+     * @param payload the item id for EXPIRE_ITEM, the scripted wall index for SCRIPTED_WALL
+     */
+    private void handleEvent(int event, int payload) {
+        if (event == SPAWN_WALL) {
+            addWall();
+            scheduleWallSpawn();
+        } else if (event == SCRIPTED_WALL) {
+            addScriptedWalls(payload);
+        } else if (event == EXPIRE_ITEM) {
+            // The item may have already been removed (and its id given to a newer item)
+            int slot = items.slotOf(payload);
+            if (slot >= 0 && items.getExpiry(slot) <= events.getFrame()) { items.removeAt(slot); }
+        }
+    }
 
     /**
      * Create a new random point that lies completely within the bounds of the
@@ -274,17 +545,172 @@ public class SnakeGame {
     }
 
     /**
+     * Saves the whole state of the game in a compact binary form: all of the
+     * settings, the snake (with its pending growth and movement), the items,
+     * the score, the frame and when the next wall appears, and the state of
+     * the random number generator. Restoring it with restoreState() gives a
+     * game that plays out exactly the same from then on.
+     * @return the saved game
+     */
+    public byte[] saveState() {
+        if (snake == null) { throw new IllegalStateException("no game to save"); }
+        ByteBuffer out = ByteBuffer.allocate(SAVE_HEADER_SIZE + snake.getSavedSize() + items.getSavedSize());
+        out.putInt(SAVE_MAGIC).putInt(SAVE_VERSION);
+        out.putFloat(dpToPxFactor).putFloat(worldScale);
+        out.putInt(width).putInt(height).putInt(viewWidth).putInt(viewHeight);
+        out.put((byte) (gameOver ? 1 : 0)).put((byte) (compactBody ? 1 : 0));
+        out.putDouble(direction).putInt(score).putDouble(speed);
+        out.putDouble(initialSpeed).putDouble(speedIncreasePerFood).putInt(startingLength);
+        out.putInt(lengthIncreasePerFood).putDouble(wallPlacementProbability).putInt(wallLifetime).putInt(foodCount);
+        out.putLong(random.getState()).putInt(events.getFrame()).putInt(nextWallFrame);
+        snake.writeTo(out);
+        items.writeTo(out);
+        return out.array();
+    }
+
+    /**
+     * Replaces the current game (if any) with one saved by saveState().
+     * @param state the saved game
+     * @throws IllegalArgumentException if state is not a complete saved game
+     */
+    public void restoreState(byte[] state) {
+        ByteBuffer in = ByteBuffer.wrap(state);
+        try {
+            if (in.getInt() != SAVE_MAGIC || in.getInt() != SAVE_VERSION) {
+                throw new IllegalArgumentException("not a saved game");
+            }
+            dpToPxFactor = in.getFloat();
+            worldScale = in.getFloat();
+            width = in.getInt();
+            height = in.getInt();
+            viewWidth = in.getInt();
+            viewHeight = in.getInt();
+            gameOver = in.get() != 0;
+            compactBody = in.get() != 0;
+            direction = in.getDouble();
+            score = in.getInt();
+            speed = in.getDouble();
+            initialSpeed = in.getDouble();
+            speedIncreasePerFood = in.getDouble();
+            startingLength = in.getInt();
+            lengthIncreasePerFood = in.getInt();
+            wallPlacementProbability = in.getDouble();
+            wallLifetime = in.getInt();
+            foodCount = in.getInt();
+            random.setState(in.getLong());
+            final int frame = in.getInt();
+            nextWallFrame = in.getInt();
+
+            snake = compactBody ? PolylineSnake.readFrom(in, dpToPxFactor) : withIndex(Snake.readFrom(in, dpToPxFactor));
+            items = new ItemStore(new SpatialGrid(width, height, getCellSize()));
+            items.readFrom(in);
+            attachSpectator();
+
+            // The wheel isn't saved, it is refilled from the items and the next wall
+            events.clear(frame);
+            for (int i = 0; i < items.size(); i++) {
+                if (items.getExpiry(i) != ItemStore.NEVER) {
+                    events.scheduleAt(Math.max(frame + 1, items.getExpiry(i)), EXPIRE_ITEM, items.getId(i));
+                }
+            }
+            if (nextWallFrame > frame) { events.scheduleAt(nextWallFrame, SPAWN_WALL, 0); }
+            if (layout != null) { scheduleScriptedWalls(layout.findScriptedWallAfter(frame)); }
+        } catch (BufferUnderflowException ex) {
+            throw new IllegalArgumentException("saved game is incomplete", ex);
+        }
+    }
+
+    /**
+     * Gets all of the body pieces of the snake. This may have to build the
+     * list (see SnakeBody.getBody()), so it shouldn't be used every frame.
      * @return list of all of the current snake body pieces
      */
     public List<PointF> getSnakeBodyLocations() { return snake.getBody(); }
 
     /**
-     * @return the current location of the food
+     * @return the current location of the first food
      */
-    public PointF getFoodLocation() { return food; }
+    public PointF getFoodLocation() { return getItemLocations(ItemStore.FOOD).get(0); }
+
+    /**
+     * @return list of all of the current food locations
+     */
+    public List<PointF> getFoodLocations() { return getItemLocations(ItemStore.FOOD); }
 
     /**
      * @return list of all of the current wall location
      */
-    public List<PointF> getWallLocations() { return Collections.unmodifiableList(walls); }
+    public List<PointF> getWallLocations() { return getItemLocations(ItemStore.WALL); }
+
+    /**
+     * Makes a new list of the locations of all items of one type. Drawing
+     * should use forEachItemNear() instead which doesn't need to make a list.
+     * @param type the type of item
+     * @return list of the locations
+     */
+    private List<PointF> getItemLocations(int type) {
+        List<PointF> locations = new ArrayList<>();
+        for (int i = 0; i < items.size(); i++) {
+            if (items.getType(i) == type) { locations.add(new PointF(items.getX(i), items.getY(i))); }
+        }
+        return Collections.unmodifiableList(locations);
+    }
+
+    /**
+     * @return all of the food and walls in the game
+     */
+    public ItemStore getItems() { return items; }
+
+    /**
+     * @return the snake, or null if no game has started
+     */
+    public SnakeBody getSnake() { return snake; }
+
+    /**
+     * Sets the stream to send the frames of the game to. The stream is sent a
+     * keyframe with the whole game to start with.
+     * @param spectator the stream, or null to stop streaming
+     */
+    public void setSpectatorStream(SpectatorStream spectator) {
+        this.spectator = spectator;
+        if (items != null) { attachSpectator(); }
+    }
+
+    /** Makes the spectator stream (if any) follow the changes to the current items. */
+    private void attachSpectator() {
+        items.setListener(spectator);
+        if (spectator != null) { spectator.requestKeyframe(); }
+    }
+
+    /**
+     * @return the width of the game world, in px
+     */
+    public int getWorldWidth() { return width; }
+
+    /**
+     * @return the height of the game world, in px
+     */
+    public int getWorldHeight() { return height; }
+
+    /**
+     * Gets the part of the world that is in view. The view is centered on the
+     * snake head, except that it stops at the edges of the world.
+     * @param viewport filled in with the part of the world in view, in px
+     */
+    public void getViewport(RectF viewport) {
+        PointF head = snake.getHead();
+        float left = Math.max(0, Math.min(width - viewWidth, head.x - viewWidth / 2f));
+        float top = Math.max(0, Math.min(height - viewHeight, head.y - viewHeight / 2f));
+        viewport.set(left, top, left + viewWidth, top + viewHeight);
+    }
+
+    /**
+     * Visits each item (food or wall) that may be within an area. Only looks
+     * at the items near the area instead of every item.
+     * @param area the area to find items in, in px
+     * @param visitor receives each of the items
+     */
+    public void forEachItemNear(RectF area, ItemStore.Visitor visitor) {
+        items.forEachNear(area, visitor);
+    }
 }
@@ -0,0 +1,286 @@
+package edu.moravian.csci299.gravitysnake;
+
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.PointF;
+import android.graphics.RectF;
+import android.graphics.drawable.Drawable;
+import android.util.DisplayMetrics;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Draws a snake game on a canvas: the snake, walls, food, and the score. Only
+ * the objects within (or just outside of) the viewport are looked at, so the
+ * time to draw does not grow with the size of the world. The quality level
+ * (one of the LEVEL_ constants of QualityGovernor) decides how nicely things
+ * are drawn.
+ *
+ * This only needs a canvas, so it can be used by SnakeGameView and also on
+ * the JVM with a canvas that records what is drawn (see RenderBenchmark).
+ * It can also draw a SnakeArena, where the whole arena is always in view.
+ */
+public class SnakeGameRenderer {
+    /** The furthest the drawn snake body may be from its path, in px */
+    private final static float BODY_TOLERANCE_PX = 0.5f;
+
+    /** The furthest the drawn snake body may be from its path with fewer body samples, in px */
+    private final static float LOW_QUALITY_BODY_TOLERANCE_PX = 2f;
+
+    /** The number of frames between score display updates when it is slowed down */
+    private final static int SLOW_HUD_INTERVAL = 15;
+
+    /** The paints and drawables used for the different parts of the game */
+    private final Paint scorePaint = new Paint();
+    private final Paint snakePaint = new Paint();
+    private final Paint botPaint = new Paint();
+    private final Paint foodPaint = new Paint();
+    private final Paint wallPaint = new Paint();
+    private final Drawable snakeHead, mouse, grenade;
+
+    /** The metrics about the display to convert from dp and sp to px */
+    private final DisplayMetrics displayMetrics;
+
+    /** The part of the game world shown at the last draw, in px */
+    private final RectF viewport = new RectF();
+
+    /** The part of the game world close enough to the view to draw, in px */
+    private final RectF visibleArea = new RectF();
+
+    /** Picks the few body points needed to draw the snake */
+    private final BodyDecimator bodyDecimator = new BodyDecimator(BODY_TOLERANCE_PX);
+
+    /** Picks the body points for each snake of an arena, made as they are needed */
+    private final List<BodyDecimator> arenaDecimators = new ArrayList<>();
+
+    /** The score text currently displayed, the score it shows, and the frames since it was updated */
+    private String scoreText = "Score: 0";
+    private int scoreTextScore;
+    private int framesSinceScoreText;
+
+    /**
+     * Create a renderer.
+     * @param displayMetrics the metrics about the display to convert from dp and sp to px
+     * @param snakeHead the drawable for the head of the snake
+     * @param mouse the drawable for food
+     * @param grenade the drawable for walls
+     */
+    public SnakeGameRenderer(DisplayMetrics displayMetrics, Drawable snakeHead, Drawable mouse, Drawable grenade) {
+        this.displayMetrics = displayMetrics;
+        this.snakeHead = snakeHead;
+        this.mouse = mouse;
+        this.grenade = grenade;
+
+        scorePaint.setColor(Color.WHITE);
+        scorePaint.setAntiAlias(true);
+        scorePaint.setTextAlign(Paint.Align.CENTER);
+        scorePaint.setTextSize(spToPx(24)); // use sp for text
+        scorePaint.setFakeBoldText(true);
+
+        snakePaint.setColor(Color.GREEN);
+        snakePaint.setAntiAlias(true);
+        snakePaint.setStyle(Paint.Style.STROKE); // the body is drawn as thick lines with round ends
+        snakePaint.setStrokeCap(Paint.Cap.ROUND);
+        snakePaint.setStrokeJoin(Paint.Join.ROUND);
+        snakePaint.setStrokeWidth(2 * dpToPx(Snake.BODY_PIECE_SIZE_DP));
+        botPaint.set(snakePaint);
+        botPaint.setColor(Color.YELLOW);
+        foodPaint.setColor(Color.LTGRAY);
+        foodPaint.setAntiAlias(true);
+        wallPaint.setColor(Color.RED);
+        wallPaint.setAntiAlias(true);
+    }
+
+    /**
+     * @return the part of the game world shown at the last draw, in px
+     */
+    public RectF getViewport() { return viewport; }
+
+    /**
+     * @return the number of body points picked to draw the snake at the last draw
+     */
+    public int getBodyPointCount() { return bodyDecimator.getPointCount(); }
+
+    /**
+     * Draws the game.
+     * @param canvas the canvas to draw on
+     * @param snakeGame the game to draw
+     * @param quality the quality level, one of the LEVEL_ constants of QualityGovernor
+     */
+    public void draw(Canvas canvas, SnakeGame snakeGame, int quality) {
+        applyQuality(quality);
+        canvas.drawText(getScoreText(snakeGame.getScore(), quality), spToPx(displayMetrics.widthPixels / 4f), spToPx(20.0f),  scorePaint);
+
+        if (snakeGame.hasNotStarted()) { return; }
+
+        // Move the canvas so the part of the world in view is drawn
+        snakeGame.getViewport(viewport);
+        final float margin = dpToPx(Snake.BODY_PIECE_SIZE_DP * 3);
+        visibleArea.set(viewport.left - margin, viewport.top - margin,
+                viewport.right + margin, viewport.bottom + margin);
+        canvas.save();
+        canvas.translate(-viewport.left, -viewport.top);
+
+        // The body is drawn as thick lines between only the points needed to
+        // keep it close to its path, so straight parts are a single line
+        bodyDecimator.setTolerance(quality >= QualityGovernor.LEVEL_FEWER_BODY_SAMPLES ?
+                LOW_QUALITY_BODY_TOLERANCE_PX : BODY_TOLERANCE_PX);
+        bodyDecimator.update(snakeGame.getSnake());
+        bodyDecimator.forEachLineNear(visibleArea, dpToPx(Snake.BODY_PIECE_SIZE_DP), (ax, ay, bx, by) -> {
+            if (ax == bx && ay == by) {
+                canvas.drawPoint(ax, ay, snakePaint);
+            } else {
+                canvas.drawLine(ax, ay, bx, by, snakePaint);
+            }
+        });
+
+        canvas.save();
+        PointF head = snakeGame.getSnake().getHead();
+        drawDrawable(snakeHead, canvas, head.x, head.y, Snake.BODY_PIECE_SIZE_DP * 3);
+        canvas.rotate((float)Math.toDegrees(snakeGame.getMovementDirection()) - 90f , head.x, head.y);
+
+        canvas.restore();
+
+        if (quality >= QualityGovernor.LEVEL_SIMPLE_SPRITES) {
+            final float wallRadius = dpToPx(SnakeGame.WALL_SIZE_DP), foodRadius = dpToPx(SnakeGame.FOOD_SIZE_DP);
+            snakeGame.forEachItemNear(visibleArea, (type, x, y) -> {
+                if (type == ItemStore.WALL) {
+                    canvas.drawCircle(x, y, wallRadius, wallPaint);
+                } else {
+                    canvas.drawCircle(x, y, foodRadius, foodPaint);
+                }
+            });
+        } else {
+            snakeGame.forEachItemNear(visibleArea, (type, x, y) -> {
+                if (type == ItemStore.WALL) {
+                    drawDrawable(grenade, canvas, x, y, SnakeGame.WALL_SIZE_DP * 2);
+                } else {
+                    drawDrawable(mouse, canvas, x, y, SnakeGame.FOOD_SIZE_DP * 2);
+                }
+            });
+        }
+        canvas.restore();
+    }
+
+    /**
+     * Draws an arena. The arena is the size of the view, so everything is
+     * drawn and the viewport is the whole arena. The score is the score of
+     * the first player, the other players' snakes are drawn the same color
+     * and the bots' snakes another color.
+     * @param canvas the canvas to draw on
+     * @param arena the arena to draw
+     * @param quality the quality level, one of the LEVEL_ constants of QualityGovernor
+     */
+    public void drawArena(Canvas canvas, SnakeArena arena, int quality) {
+        applyQuality(quality);
+        final int score = arena.hasNotStarted() ? 0 : arena.getScore(0);
+        canvas.drawText(getScoreText(score, quality), spToPx(displayMetrics.widthPixels / 4f), spToPx(20.0f),  scorePaint);
+
+        if (arena.hasNotStarted()) { return; }
+        viewport.set(0, 0, arena.getWidth(), arena.getHeight());
+
+        final float tolerance = quality >= QualityGovernor.LEVEL_FEWER_BODY_SAMPLES ?
+                LOW_QUALITY_BODY_TOLERANCE_PX : BODY_TOLERANCE_PX;
+        while (arenaDecimators.size() < arena.getSnakeCount()) {
+            arenaDecimators.add(new BodyDecimator(tolerance));
+        }
+        for (int i = 0; i < arena.getSnakeCount(); i++) {
+            if (!arena.isAlive(i)) { continue; }
+            final Paint paint = arena.isBot(i) ? botPaint : snakePaint;
+            BodyDecimator decimator = arenaDecimators.get(i);
+            decimator.setTolerance(tolerance);
+            decimator.update(arena.getSnake(i));
+            decimator.forEachLineNear(viewport, dpToPx(Snake.BODY_PIECE_SIZE_DP), (ax, ay, bx, by) -> {
+                if (ax == bx && ay == by) {
+                    canvas.drawPoint(ax, ay, paint);
+                } else {
+                    canvas.drawLine(ax, ay, bx, by, paint);
+                }
+            });
+            PointF head = arena.getSnake(i).getHead();
+            drawDrawable(snakeHead, canvas, head.x, head.y, Snake.BODY_PIECE_SIZE_DP * 3);
+        }
+
+        final boolean simple = quality >= QualityGovernor.LEVEL_SIMPLE_SPRITES;
+        final List<PointF> walls = arena.getWallLocations();
+        for (int i = 0; i < walls.size(); i++) {
+            PointF wall = walls.get(i);
+            if (simple) {
+                canvas.drawCircle(wall.x, wall.y, dpToPx(SnakeGame.WALL_SIZE_DP), wallPaint);
+            } else {
+                drawDrawable(grenade, canvas, wall, SnakeGame.WALL_SIZE_DP * 2);
+            }
+        }
+        PointF food = arena.getFoodLocation();
+        if (simple) {
+            canvas.drawCircle(food.x, food.y, dpToPx(SnakeGame.FOOD_SIZE_DP), foodPaint);
+        } else {
+            drawDrawable(mouse, canvas, food, SnakeGame.FOOD_SIZE_DP * 2);
+        }
+    }
+
+    /**
+     * Turns anti-aliasing on or off for the shapes of the game.
+     * @param quality the current quality level
+     */
+    private void applyQuality(int quality) {
+        boolean antiAlias = quality < QualityGovernor.LEVEL_NO_ANTI_ALIAS;
+        if (snakePaint.isAntiAlias() != antiAlias) {
+            snakePaint.setAntiAlias(antiAlias);
+            botPaint.setAntiAlias(antiAlias);
+            foodPaint.setAntiAlias(antiAlias);
+            wallPaint.setAntiAlias(antiAlias);
+        }
+    }
+
+    /**
+     * Gets the text for the score display. The text is only rebuilt when the
+     * score changes, and when the score display is slowed down only every
+     * few frames.
+     * @param score the current score
+     * @param quality the current quality level
+     * @return the text to display
+     */
+    private String getScoreText(int score, int quality) {
+        int interval = quality >= QualityGovernor.LEVEL_SLOW_HUD ? SLOW_HUD_INTERVAL : 1;
+        if (++framesSinceScoreText >= interval && score != scoreTextScore) {
+            scoreTextScore = score;
+            scoreText = "Score: " + scoreTextScore;
+            framesSinceScoreText = 0;
+        }
+        return scoreText;
+    }
+
+    /**
+     * Draws a drawable on the canvas.
+     * @param drawable Drawable to draw.
+     * @param canvas Canvsas to draw on.
+     * @param p what point to draw at.
+     * @param radius radius for bounds.
+     */
+    public void drawDrawable(Drawable drawable, Canvas canvas, PointF p, float radius){
+        drawDrawable(drawable, canvas, p.x, p.y, radius);
+    }
+
+    /**
+     * Draws a drawable on the canvas.
+     * @param drawable Drawable to draw.
+     * @param canvas Canvas to draw on.
+     * @param x x coordinate to draw at.
+     * @param y y coordinate to draw at.
+     * @param radius radius for bounds.
+     */
+    public void drawDrawable(Drawable drawable, Canvas canvas, float x, float y, float radius){
+        float size = dpToPx(radius);
+        drawable.setBounds((int)(x - size), (int)(y - size), (int)(x + size), (int)(y + size));
+        drawable.draw(canvas);
+    }
+
+    /** @return a size in dp converted to px */
+    private float dpToPx(float dp) { return dp * displayMetrics.density; }
+
+    /** @return a size in sp converted to px */
+    private float spToPx(float sp) { return sp * displayMetrics.scaledDensity; }
+}
@@ -4,21 +4,30 @@ import android.app.Activity;
 import android.content.Context;
 import android.content.SharedPreferences;
 import android.graphics.Canvas;
-import android.graphics.Color;
-import android.graphics.Paint;
-import android.graphics.PointF;
-import android.graphics.drawable.Drawable;
+import android.graphics.RectF;
 import android.hardware.Sensor;
 import android.hardware.SensorEvent;
 import android.hardware.SensorEventListener;
+import android.os.Bundle;
+import android.os.Parcelable;
 import android.util.AttributeSet;
 import android.util.DisplayMetrics;
+import android.util.Log;
+import android.view.Choreographer;
+import android.view.Display;
 import android.view.MotionEvent;
 import android.view.View;
 
 import androidx.annotation.Nullable;
 import androidx.core.content.ContextCompat;
 
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
 /**
  * The custom View for the Snake Game. This handles the user interaction and
  * sensor information for the snake game but has none of the game logic. That
@@ -29,32 +38,87 @@ import androidx.core.content.ContextCompat;
  * declared that don't have documentation). You will also need to add at least
  * a few methods to this class.
  */
-public class SnakeGameView extends View implements SensorEventListener {
+public class SnakeGameView extends View implements SensorEventListener, Choreographer.FrameCallback {
     private SharedPreferences preferences;
 
-    /** The paints and drawables used for the different parts of the game */
-    private final Paint scorePaint = new Paint();
-    private final Paint snakePaint = new Paint();
-
     /** The metrics about the display to convert from dp and sp to px */
     private final DisplayMetrics displayMetrics;
 
-    /** Drawables for the game */
-    Drawable snakeHead;
-    Drawable mouse;
-    Drawable grenade;
+    /** Draws the game */
+    private final SnakeGameRenderer renderer;
 
     /** The snake game for the logic behind this view */
     private final SnakeGame snakeGame;
 
+    /** The arena played instead of the snake game, null unless in arena mode */
+    private SnakeArena arena;
+
+    /** The number of bots in the arena */
+    private int arenaBots;
+
     private int level;
 
+    /** Number of frames each wall lasts before disappearing (about a minute) */
+    private final static int WALL_LIFETIME_FRAMES = 3600;
+
+    /** Saved games bigger than this go in a file instead of the saved instance state */
+    private final static int MAX_BUNDLED_SAVE_BYTES = 100 * 1024;
+
+    /** The name of the file for saved games too big for the saved instance state */
+    private final static String SAVE_FILE_NAME = "saved_game.bin";
+
+    /** Lowers the drawing quality when frames take too long */
+    private final QualityGovernor governor = new QualityGovernor(1_000_000_000L / 60);
+
+    /** True once the frame budget of the governor matches the display */
+    private boolean frameBudgetSet;
+
+    /** The time of each step of the game, the game was made for 60 steps a second */
+    private final static long STEP_NANOS = 1_000_000_000L / 60;
+
+    /** The most steps taken in one frame, so a long hiccup doesn't make the snake jump */
+    private final static int MAX_STEPS_PER_FRAME = 4;
+
+    /** Tells the view when each frame starts, in step with the display */
+    private final Choreographer choreographer = Choreographer.getInstance();
+
+    /** True when a frame callback is waiting to be run */
+    private boolean frameScheduled;
+
+    /** True when the game is paused */
+    private boolean paused;
+
+    /** The vsync time of the last frame, or 0 if the next frame is the first one after a break */
+    private long lastFrameTimeNanos;
+
+    /** Time from the last frame that was not enough for a whole step, in ns */
+    private long leftoverNanos;
+
+    /** True once the results of the game have been saved */
+    private boolean resultsSaved;
+
+    /** Streams the game to a spectator, null unless a spectator port was given */
+    private SpectatorStream spectator;
+
+    /** Pointers with ids of this or more are ignored (there are never that many fingers) */
+    private final static int MAX_POINTER_ID = 16;
+
+    /** Where each pointer was last seen in the world (by pointer id), in px */
+    private final float[] lastTouchX = new float[MAX_POINTER_ID], lastTouchY = new float[MAX_POINTER_ID];
+
+    /** If each pointer is down (by pointer id) */
+    private final boolean[] pointerDown = new boolean[MAX_POINTER_ID];
+
+    /** The touch segments of the current touch event, 4 numbers each (see SnakeGame.touchedSegments()) */
+    private float[] touchSegments = new float[4 * 32];
+    private int touchSegmentCount;
+
     // Required constructors for making your own view that can be placed in a layout
     public SnakeGameView(Context context) { this(context, null);  }
 
     /**
-     * Initializes preferences, displayMetrics, snakeGame, and any Paint fields.
-     * Initializes Drawable fields and sets background.
+     * Initializes preferences, displayMetrics, snakeGame, and the renderer
+     * with its drawables, and sets background.
      * @param context
      * @param attrs
      */
@@ -72,19 +136,11 @@ public class SnakeGameView extends View implements SensorEventListener {
         // TODO: feel free to change this (and it can even be changed to any Drawable if you use setBackground() instead)
         setBackgroundColor(0xFF333333);
 
-        // Setup all of the paints and drawables used for drawing later
-        // TODO: this one paint is a demonstration for text, solid colors usually just require setting the color
-        scorePaint.setColor(Color.WHITE);
-        scorePaint.setAntiAlias(true);
-        scorePaint.setTextAlign(Paint.Align.CENTER);
-        scorePaint.setTextSize(spToPx(24)); // use sp for text
-        scorePaint.setFakeBoldText(true);
-
-        snakePaint.setColor(Color.GREEN);
-
-        snakeHead = ContextCompat.getDrawable(context,R.mipmap.snake_head_foreground);
-        mouse = ContextCompat.getDrawable(context,R.drawable.mouse);
-        grenade = ContextCompat.getDrawable(context,R.drawable.grenade);
+        // Setup the renderer with the drawables used for drawing
+        renderer = new SnakeGameRenderer(displayMetrics,
+                ContextCompat.getDrawable(context,R.mipmap.snake_head_foreground),
+                ContextCompat.getDrawable(context,R.drawable.mouse),
+                ContextCompat.getDrawable(context,R.drawable.grenade));
 
         this.setBackgroundResource(R.drawable.sand);
     }
@@ -126,7 +182,59 @@ public class SnakeGameView extends View implements SensorEventListener {
         snakeGame.setSpeedIncreasePerFood(difficulty * 0.1);
         snakeGame.setWallPlacementProbability((1.0f / 200.0f) * difficulty);
         snakeGame.setLengthIncreasePerFood(difficulty);
+        snakeGame.setWallLifetime(WALL_LIFETIME_FRAMES);
+
+    }
+
+    /**
+     * Sets the game to a level from a level pack: its settings, the walls
+     * placed at the start, and its scripted walls.
+     * @param packLevel the level from the pack
+     * @param levelNumber the number of the level, used for its high score and stats
+     */
+    public void setPackLevel(LevelPack.Level packLevel, int levelNumber) {
+        level = levelNumber;
+        snakeGame.setInitialSpeed(packLevel.getInitialSpeed());
+        snakeGame.setStartingLength(packLevel.getStartingLength());
+        snakeGame.setMovementDirection(270.0);
+        snakeGame.setSpeedIncreasePerFood(packLevel.getSpeedIncreasePerFood());
+        snakeGame.setWallPlacementProbability(packLevel.getWallPlacementProbability());
+        snakeGame.setLengthIncreasePerFood(packLevel.getLengthIncreasePerFood());
+        snakeGame.setWallLifetime(packLevel.getWallLifetime());
+        snakeGame.setFoodCount(packLevel.getFoodCount());
+        snakeGame.setWorldScale(packLevel.getWorldScale());
+        snakeGame.setLevelLayout(packLevel);
+    }
 
+    /**
+     * Plays an arena against bots (see SnakeArena) instead of the normal
+     * game. The arena uses the settings already set for the game (so call
+     * this after setDifficulty()), is the size of the view, and the player
+     * steers the first snake. Arena games aren't saved when the app is in
+     * the background and don't count towards the high score.
+     * @param botCount the number of bots to play against
+     */
+    public void setArena(int botCount) {
+        arena = new SnakeArena(System.nanoTime());
+        arenaBots = botCount;
+        arena.setInitialSpeed(snakeGame.getInitialSpeed());
+        arena.setSpeedIncreasePerFood(snakeGame.getSpeedIncreasePerFood());
+        arena.setStartingLength(snakeGame.getStartingLength());
+        arena.setLengthIncreasePerFood(snakeGame.getLengthIncreasePerFood());
+        arena.setWallPlacementProbability(snakeGame.getWallPlacementProbability());
+    }
+
+    /**
+     * @return the arena played instead of the snake game, or null if not in arena mode
+     */
+    public SnakeArena getArena() { return arena; }
+
+    /**
+     * @return true if a game (or arena) has started and the player is still going
+     */
+    private boolean isPlaying() {
+        if (arena != null) { return !arena.hasNotStarted() && arena.isAlive(0); }
+        return !snakeGame.hasNotStarted() && !snakeGame.isGameOver();
     }
 
     /**
@@ -139,81 +247,244 @@ public class SnakeGameView extends View implements SensorEventListener {
     protected void onLayout(boolean changed, int left, int top, int right, int bottom) {
         // NOTE: this function is done for you
         super.onLayout(changed, left, top, right, bottom);
-        if (snakeGame.hasNotStarted()) {
-            snakeGame.startGame(right - left, bottom - top);
+        if (arena != null) {
+            if (arena.hasNotStarted()) {
+                arena.setDpToPxFactor(displayMetrics.density);
+                arena.startGame(right - left, bottom - top, 1, arenaBots);
+            }
+        } else if (snakeGame.hasNotStarted()) {
             snakeGame.setDpToPxFactor(displayMetrics.density);
+            snakeGame.startGame(right - left, bottom - top);
         }
         invalidate();
+        scheduleFrame();
     }
 
     /**
-     * Draws all objects in the game.
-     * Draws the snake, walls, food, and the score.
-     * @param canvas
+     * Starts running frames again once the view is shown.
      */
     @Override
-    protected void onDraw(Canvas canvas) {
-        boolean snakeHeadDrawn = false;
-        super.onDraw(canvas);
-        postInvalidateOnAnimation(); // automatically invalidate every frame so we get continuous playback
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        scheduleFrame();
+    }
 
-        canvas.drawText("Score: " + snakeGame.getScore(), spToPx(displayMetrics.widthPixels / 4f), spToPx(20.0f),  scorePaint);
+    /**
+     * Stops running frames, and streaming to spectators, once the view is no
+     * longer shown.
+     */
+    @Override
+    protected void onDetachedFromWindow() {
+        stopFrames();
+        if (spectator != null) {
+            snakeGame.setSpectatorStream(null);
+            spectator.close();
+            spectator = null;
+        }
+        super.onDetachedFromWindow();
+    }
 
-        if (snakeGame.update())
-        {
-            for (PointF p: snakeGame.getSnakeBodyLocations())
-            {
-                canvas.drawCircle(p.x, p.y, dpToPx(Snake.BODY_PIECE_SIZE_DP), snakePaint);
-            }
+    /**
+     * Pauses the game, no frames are run until it is resumed.
+     */
+    public void pause() {
+        paused = true;
+        stopFrames();
+    }
 
-            canvas.save();
-            PointF head = snakeGame.getSnakeBodyLocations().get(0);
-            drawDrawable(snakeHead, canvas, head, Snake.BODY_PIECE_SIZE_DP * 3);
-            canvas.rotate((float)Math.toDegrees(snakeGame.getMovementDirection()) - 90f , head.x, head.y);
+    /**
+     * Resumes the game after it was paused. The time spent paused is skipped
+     * over instead of being caught up on.
+     */
+    public void resume() {
+        paused = false;
+        scheduleFrame();
+    }
 
-            canvas.restore();
+    /**
+     * @return true if the game is paused
+     */
+    public boolean isPaused() { return paused; }
 
-            for (PointF w: snakeGame.getWallLocations())
-            {
-                drawDrawable(grenade, canvas, w, SnakeGame.WALL_SIZE_DP * 2);
-            }
+    /**
+     * Asks for the next frame if there is anything to run. Nothing is asked
+     * for while paused, before the game has started, after it is over, or
+     * while the view isn't shown, so the view is completely idle then.
+     */
+    private void scheduleFrame() {
+        if (frameScheduled || paused || !isAttachedToWindow() || !isPlaying()) { return; }
+        choreographer.postFrameCallback(this);
+        frameScheduled = true;
+    }
 
-            PointF foodLocation = snakeGame.getFoodLocation();
-            drawDrawable(mouse, canvas, foodLocation, SnakeGame.FOOD_SIZE_DP * 2);
+    /**
+     * Cancels the next frame, if one was asked for.
+     */
+    private void stopFrames() {
+        if (frameScheduled) {
+            choreographer.removeFrameCallback(this);
+            frameScheduled = false;
         }
-        else
-        {
-            saveHighScore();
+        lastFrameTimeNanos = 0;
+        leftoverNanos = 0;
+    }
+
+    /**
+     * Runs one frame of the game. The game is stepped 60 times a second of
+     * vsync time no matter how fast the display refreshes, then the view is
+     * redrawn and the next frame is asked for. When the game ends (or the
+     * player's snake in the arena dies) the high score is saved, the activity
+     * is finished, and no more frames are asked for.
+     * @param frameTimeNanos the vsync time the frame started at, in the same
+     *                       time base as System.nanoTime()
+     */
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        frameScheduled = false;
+        if (paused || !isPlaying()) { return; }
+
+        // The first frame after a break always takes one step
+        long elapsed = lastFrameTimeNanos == 0 ? STEP_NANOS : frameTimeNanos - lastFrameTimeNanos;
+        lastFrameTimeNanos = frameTimeNanos;
+        leftoverNanos = Math.min(leftoverNanos + elapsed, MAX_STEPS_PER_FRAME * STEP_NANOS);
+
+        boolean alive = true;
+        while (alive && leftoverNanos >= STEP_NANOS) {
+            alive = arena != null ? arena.update() && arena.isAlive(0) : snakeGame.update();
+            leftoverNanos -= STEP_NANOS;
+        }
+        if (!alive) {
+            if (arena == null) { saveResults(); }
             finishActivity();
+            return;
         }
+
+        invalidate();
+        scheduleFrame();
     }
 
     /**
-     * Draws a drawable on the canvas.
-     * @param drawable Drawable to draw.
-     * @param canvas Canvsas to draw on.
-     * @param p what point to draw at.
-     * @param radius radius for bounds.
+     * Sets how many times larger than the screen the world is. With a scale
+     * above 1 the view follows the snake head around the world.
+     * @param worldScale the new scale of the world, at least 1
+     */
+    public void setWorldScale(float worldScale) { snakeGame.setWorldScale(worldScale); }
+
+    /**
+     * @return the current drawing quality level, one of the LEVEL_ constants
+     *         of QualityGovernor
      */
-    public void drawDrawable(Drawable drawable, Canvas canvas, PointF p, float radius){
-        float size = dpToPx(radius);
-        drawable.setBounds((int)(p.x - size), (int)(p.y - size), (int)(p.x + size), (int)(p.y + size));
-        drawable.draw(canvas);
+    public int getQualityLevel() { return governor.getLevel(); }
+
+    /**
+     * @return the governor that picks the drawing quality level
+     */
+    public QualityGovernor getQualityGovernor() { return governor; }
+
+    /**
+     * Starts streaming the game to spectators on a loopback port (see
+     * SpectatorStream). The stream is closed once the view is no longer shown.
+     * @param port the port to listen on, or 0 for any free port
+     */
+    public void setSpectatorPort(int port) {
+        if (spectator != null) { return; }
+        try {
+            spectator = new SpectatorStream(port);
+            snakeGame.setSpectatorStream(spectator);
+            Log.i("SnakeGameView", "spectators can connect on port " + spectator.getPort());
+        } catch (IOException ex) {
+            Log.w("SnakeGameView", "could not start spectator stream", ex);
+        }
+    }
+
+    /**
+     * Draws all objects in the game with the renderer. The game itself is
+     * moved forward in doFrame(), this only draws it. The time the drawing
+     * takes is given to the governor (not the time of the game steps, which
+     * the quality level can't change), and the quality level it picks
+     * decides how nicely things are drawn.
+     * @param canvas
+     */
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        if (!frameBudgetSet) { setFrameBudget(); }
+
+        final long start = System.nanoTime();
+        if (arena != null) {
+            renderer.drawArena(canvas, arena, governor.getLevel());
+        } else {
+            renderer.draw(canvas, snakeGame, governor.getLevel());
+        }
+        governor.recordFrame(System.nanoTime() - start);
+    }
+
+    /**
+     * Sets the time the governor allows for each frame from the refresh rate
+     * of the display. Until the view is attached to a display 60 Hz is used.
+     */
+    private void setFrameBudget() {
+        Display display = getDisplay();
+        if (display == null) { return; }
+        float refreshRate = display.getRefreshRate();
+        if (refreshRate >= 1) { governor.setFrameBudgetNanos((long) (1e9 / refreshRate)); }
+        frameBudgetSet = true;
     }
 
     /**
      * ends the activity if the snake it touched.
-     * Updates the snakeGame every time user touches screen.
+     * Updates the snakeGame every time user touches screen. Every pointer is
+     * followed, and every movement of each one since the last event
+     * (including the in-between historical samples) becomes a touch segment,
+     * so a fast swipe touches everything it passes over. All of the segments
+     * of the event are given to the game as one batch, and nothing is
+     * allocated for each event.
+     * Touches do nothing in the arena.
      * @param event the event.
      * @return always true.
      */
     @Override
     public boolean onTouchEvent(MotionEvent event) {
-        PointF point = new PointF(event.getX(), event.getY());
-        if (!snakeGame.touched(point) && event.getAction() == MotionEvent.ACTION_DOWN
-                && event.getAction() == MotionEvent.ACTION_MOVE)
+        if (arena != null || snakeGame.hasNotStarted()) { return true; }
+        touchSegmentCount = 0;
+        final int action = event.getActionMasked();
+        if (action == MotionEvent.ACTION_CANCEL) {
+            Arrays.fill(pointerDown, false);
+            return true;
+        }
+
+        // The touches are on the screen, move them to where they are in the world
+        final RectF viewport = renderer.getViewport();
+        final float dx = viewport.left, dy = viewport.top;
+        if (action == MotionEvent.ACTION_DOWN || action == MotionEvent.ACTION_POINTER_DOWN) {
+            if (action == MotionEvent.ACTION_DOWN) { Arrays.fill(pointerDown, false); }
+            final int index = event.getActionIndex(), id = event.getPointerId(index);
+            if (id < MAX_POINTER_ID) {
+                float x = event.getX(index) + dx, y = event.getY(index) + dy;
+                pointerDown[id] = true;
+                lastTouchX[id] = x;
+                lastTouchY[id] = y;
+                addTouchSegment(x, y, x, y);
+            }
+        } else {
+            final int history = event.getHistorySize();
+            for (int p = 0; p < event.getPointerCount(); p++) {
+                final int id = event.getPointerId(p);
+                if (id >= MAX_POINTER_ID || !pointerDown[id]) { continue; }
+                for (int h = 0; h < history; h++) {
+                    addTouchMove(id, event.getHistoricalX(p, h) + dx, event.getHistoricalY(p, h) + dy);
+                }
+                addTouchMove(id, event.getX(p) + dx, event.getY(p) + dy);
+            }
+            if (action == MotionEvent.ACTION_UP || action == MotionEvent.ACTION_POINTER_UP) {
+                final int id = event.getPointerId(event.getActionIndex());
+                if (id < MAX_POINTER_ID) { pointerDown[id] = false; }
+            }
+        }
+
+        if (touchSegmentCount > 0 && !snakeGame.touchedSegments(touchSegments, touchSegmentCount))
         {
-            saveHighScore();
+            saveResults();
             finishActivity();
         }
 
@@ -221,12 +492,121 @@ public class SnakeGameView extends View implements SensorEventListener {
     }
 
     /**
-     * Save the current score if it is a high score.
+     * Adds the movement of a pointer to a new location as a touch segment.
+     * @param id the id of the pointer
+     * @param x the new x coordinate of the pointer in the world, in px
+     * @param y the new y coordinate of the pointer in the world, in px
+     */
+    private void addTouchMove(int id, float x, float y) {
+        if (x == lastTouchX[id] && y == lastTouchY[id]) { return; }
+        addTouchSegment(lastTouchX[id], lastTouchY[id], x, y);
+        lastTouchX[id] = x;
+        lastTouchY[id] = y;
+    }
+
+    /**
+     * Adds a touch segment to the current batch.
+     * @param ax the x coordinate of the start of the segment, in px
+     * @param ay the y coordinate of the start of the segment, in px
+     * @param bx the x coordinate of the end of the segment, in px
+     * @param by the y coordinate of the end of the segment, in px
+     */
+    private void addTouchSegment(float ax, float ay, float bx, float by) {
+        if (4 * touchSegmentCount == touchSegments.length) {
+            touchSegments = Arrays.copyOf(touchSegments, 2 * touchSegments.length);
+        }
+        int i = 4 * touchSegmentCount++;
+        touchSegments[i] = ax;
+        touchSegments[i + 1] = ay;
+        touchSegments[i + 2] = bx;
+        touchSegments[i + 3] = by;
+    }
+
+    /**
+     * Save the current score if it is a high score, and add the game to the
+     * stats of the level. This only happens once per game.
      */
-    private void saveHighScore()
+    private void saveResults()
     {
+        if (resultsSaved) { return; }
+        resultsSaved = true;
         Activity context = (Activity) getContext();
         StartActivity.setHighScore(preferences, context, level, snakeGame.getScore());
+        LevelStats.addGame(preferences, context, level, snakeGame.getScore(),
+                snakeGame.getFramesPlayed() * (double) STEP_NANOS / 1e9);
+    }
+
+    /**
+     * Saves the game that is in progress so it can continue if Android has to
+     * kill the app while it is in the background. Small games are kept in the
+     * saved state directly, large ones are written to a file since the saved
+     * state has to stay small.
+     * @return the saved state of the view
+     */
+    @Override
+    protected Parcelable onSaveInstanceState() {
+        Bundle state = new Bundle();
+        state.putParcelable("superState", super.onSaveInstanceState());
+        if (!snakeGame.hasNotStarted() && !snakeGame.isGameOver()) {
+            byte[] game = snakeGame.saveState();
+            if (game.length <= MAX_BUNDLED_SAVE_BYTES) {
+                state.putByteArray("game", game);
+            } else if (writeSaveFile(game)) {
+                state.putBoolean("gameInFile", true);
+            }
+        }
+        return state;
+    }
+
+    /**
+     * Continues the game saved by onSaveInstanceState() (if there was one).
+     * This happens before layout, so the saved game is used instead of
+     * starting a new one.
+     * @param state the saved state of the view
+     */
+    @Override
+    protected void onRestoreInstanceState(Parcelable state) {
+        Bundle bundle = (Bundle) state;
+        super.onRestoreInstanceState(bundle.getParcelable("superState"));
+        byte[] game = bundle.getBoolean("gameInFile") ? readSaveFile() : bundle.getByteArray("game");
+        if (game != null) {
+            try {
+                snakeGame.restoreState(game);
+            } catch (IllegalArgumentException ex) {
+                Log.w("SnakeGameView", "could not restore saved game", ex);
+            }
+        }
+    }
+
+    /**
+     * Writes a saved game to the save file.
+     * @param game the saved game
+     * @return true if it was written
+     */
+    private boolean writeSaveFile(byte[] game) {
+        try (FileOutputStream out = new FileOutputStream(new File(getContext().getCacheDir(), SAVE_FILE_NAME))) {
+            out.write(game);
+            return true;
+        } catch (IOException ex) {
+            Log.w("SnakeGameView", "could not write saved game", ex);
+            return false;
+        }
+    }
+
+    /**
+     * Reads the saved game from the save file.
+     * @return the saved game, or null if it couldn't be read
+     */
+    private byte[] readSaveFile() {
+        File file = new File(getContext().getCacheDir(), SAVE_FILE_NAME);
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            byte[] game = new byte[(int) file.length()];
+            in.readFully(game);
+            return game;
+        } catch (IOException ex) {
+            Log.w("SnakeGameView", "could not read saved game", ex);
+            return null;
+        }
     }
 
     /**
@@ -248,6 +628,7 @@ public class SnakeGameView extends View implements SensorEventListener {
         double x = event.values[0];
         double y = event.values[1];
         snakeGame.setMovementDirection(Math.atan2(y, -x));
+        if (arena != null && !arena.hasNotStarted()) { arena.setMovementDirection(0, Math.atan2(y, -x)); }
     }
 
     /** Does nothing but must be provided. */
@@ -0,0 +1,269 @@
+package edu.moravian.csci299.gravitysnake;
+
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+/**
+ * A uniform grid of square cells that buckets points so that the points near
+ * a location can be found without looking at every point. Each point is
+ * stored along with an integer id that is chosen by whoever fills the grid
+ * (for example an index into a list of items).
+ *
+ * Points outside of the bounds of the grid are placed in the nearest edge
+ * cell, so nothing is ever lost, it just becomes a bit slower to find.
+ *
+ * Queries only read the grid, so any number of threads may query it at once
+ * as long as nothing is being inserted or removed at the same time.
+ */
+public class SpatialGrid {
+    /** Receives each point found by a query. */
+    public interface Visitor {
+        /**
+         * @param id the id the point was inserted with
+         * @param x the x coordinate of the point, in px
+         * @param y the y coordinate of the point, in px
+         */
+        void visit(int id, float x, float y);
+    }
+
+    /** Starting capacity of a cell once something is placed in it */
+    private final static int INITIAL_CELL_CAPACITY = 8;
+
+    /** The width and height of each cell, in px */
+    private final float cellSize;
+
+    /** The number of columns and rows of cells */
+    private final int cols, rows;
+
+    /**
+     * The ids and coordinates of the points in each cell. The arrays for a
+     * cell are only created once something is placed in that cell.
+     */
+    private final int[][] ids;
+    private final float[][] xs, ys;
+
+    /** The number of points in each cell */
+    private final int[] counts;
+
+    /** The total number of points in the grid */
+    private int size;
+
+    /**
+     * Create an empty grid covering the rectangle from 0,0 to the given width
+     * and height.
+     * @param width the width of the area covered, in px
+     * @param height the height of the area covered, in px
+     * @param cellSize the width and height of each cell, in px, ideally about
+     *                 the size of the range used in queries
+     */
+    public SpatialGrid(float width, float height, float cellSize) {
+        this.cellSize = cellSize;
+        this.cols = Math.max(1, (int) Math.ceil(width / cellSize));
+        this.rows = Math.max(1, (int) Math.ceil(height / cellSize));
+        ids = new int[cols * rows][];
+        xs = new float[cols * rows][];
+        ys = new float[cols * rows][];
+        counts = new int[cols * rows];
+    }
+
+    /**
+     * @return the number of points in the grid
+     */
+    public int size() { return size; }
+
+    /**
+     * Removes all points from the grid. The memory used by the cells is kept
+     * so that refilling the grid does not need to allocate.
+     */
+    public void clear() {
+        Arrays.fill(counts, 0);
+        size = 0;
+    }
+
+    /**
+     * Adds a point to the grid.
+     * @param id the id to store with the point
+     * @param x the x coordinate of the point, in px
+     * @param y the y coordinate of the point, in px
+     */
+    public void insert(int id, float x, float y) {
+        int cell = row(y) * cols + col(x);
+        int n = counts[cell];
+        if (ids[cell] == null) {
+            ids[cell] = new int[INITIAL_CELL_CAPACITY];
+            xs[cell] = new float[INITIAL_CELL_CAPACITY];
+            ys[cell] = new float[INITIAL_CELL_CAPACITY];
+        } else if (n == ids[cell].length) {
+            ids[cell] = Arrays.copyOf(ids[cell], 2 * n);
+            xs[cell] = Arrays.copyOf(xs[cell], 2 * n);
+            ys[cell] = Arrays.copyOf(ys[cell], 2 * n);
+        }
+        ids[cell][n] = id;
+        xs[cell][n] = x;
+        ys[cell][n] = y;
+        counts[cell] = n + 1;
+        size++;
+    }
+
+    /**
+     * Removes a point from the grid. The coordinates must be the same ones
+     * that the point was inserted with.
+     * @param id the id the point was inserted with
+     * @param x the x coordinate of the point, in px
+     * @param y the y coordinate of the point, in px
+     * @return true if the point was found and removed
+     */
+    public boolean remove(int id, float x, float y) {
+        int cell = row(y) * cols + col(x);
+        int n = counts[cell];
+        for (int i = 0; i < n; i++) {
+            if (ids[cell][i] == id) {
+                // Move the last point of the cell into the hole
+                ids[cell][i] = ids[cell][n - 1];
+                xs[cell][i] = xs[cell][n - 1];
+                ys[cell][i] = ys[cell][n - 1];
+                counts[cell] = n - 1;
+                size--;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks if any point in the grid is within range of a location.
+     * @param x the x coordinate of the location, in px
+     * @param y the y coordinate of the location, in px
+     * @param range the maximum distance allowed between the point and the
+     *              location, in px
+     * @param filter only points whose ids pass this filter count, may be null
+     *               to count every point
+     * @return true if any point (passing the filter) is closer than range to
+     *         the location
+     */
+    public boolean anyWithinRange(float x, float y, double range, IntPredicate filter) {
+        final double rangeSq = range * range;
+        final int c0 = col((float) (x - range)), c1 = col((float) (x + range));
+        final int r0 = row((float) (y - range)), r1 = row((float) (y + range));
+        for (int r = r0; r <= r1; r++) {
+            for (int c = c0; c <= c1; c++) {
+                int cell = r * cols + c, n = counts[cell];
+                float[] cx = xs[cell], cy = ys[cell];
+                for (int i = 0; i < n; i++) {
+                    float dx = cx[i] - x, dy = cy[i] - y;
+                    if (dx*dx + dy*dy < rangeSq && (filter == null || filter.test(ids[cell][i]))) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks if any point in the grid is within range of a line segment, for
+     * example the path something took over a frame.
+     * @param ax the x coordinate of the start of the segment, in px
+     * @param ay the y coordinate of the start of the segment, in px
+     * @param bx the x coordinate of the end of the segment, in px
+     * @param by the y coordinate of the end of the segment, in px
+     * @param range the maximum distance allowed between the point and the
+     *              segment, in px
+     * @param filter only points whose ids pass this filter count, may be null
+     *               to count every point
+     * @return true if any point (passing the filter) is closer than range to
+     *         the segment
+     */
+    public boolean anyNearSegment(float ax, float ay, float bx, float by, double range, IntPredicate filter) {
+        final float rangeSq = (float) (range * range);
+        final int c0 = col((float) (Math.min(ax, bx) - range)), c1 = col((float) (Math.max(ax, bx) + range));
+        final int r0 = row((float) (Math.min(ay, by) - range)), r1 = row((float) (Math.max(ay, by) + range));
+        for (int r = r0; r <= r1; r++) {
+            for (int c = c0; c <= c1; c++) {
+                int cell = r * cols + c, n = counts[cell];
+                float[] cx = xs[cell], cy = ys[cell];
+                for (int i = 0; i < n; i++) {
+                    if (Util.distanceToSegmentSquared(cx[i], cy[i], ax, ay, bx, by) < rangeSq &&
+                            (filter == null || filter.test(ids[cell][i]))) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks if any point in the grid is within range of any of several line
+     * segments, for example all of the finger movements since the last touch
+     * event. The cells covering all of the segments are looked at once, and
+     * each point in them is checked against every segment.
+     * @param segments the start x, start y, end x, and end y of each segment, in px
+     * @param count the number of segments
+     * @param range the maximum distance allowed between the point and a
+     *              segment, in px
+     * @param filter only points whose ids pass this filter count, may be null
+     *               to count every point
+     * @return true if any point (passing the filter) is closer than range to
+     *         any of the segments
+     */
+    public boolean anyNearSegments(float[] segments, int count, double range, IntPredicate filter) {
+        if (count == 0) { return false; }
+        float left = Float.POSITIVE_INFINITY, top = Float.POSITIVE_INFINITY;
+        float right = Float.NEGATIVE_INFINITY, bottom = Float.NEGATIVE_INFINITY;
+        for (int i = 0; i < 4 * count; i += 2) {
+            left = Math.min(left, segments[i]);
+            right = Math.max(right, segments[i]);
+            top = Math.min(top, segments[i + 1]);
+            bottom = Math.max(bottom, segments[i + 1]);
+        }
+        final float rangeSq = (float) (range * range);
+        final int c0 = col((float) (left - range)), c1 = col((float) (right + range));
+        final int r0 = row((float) (top - range)), r1 = row((float) (bottom + range));
+        for (int r = r0; r <= r1; r++) {
+            for (int c = c0; c <= c1; c++) {
+                int cell = r * cols + c, n = counts[cell];
+                float[] cx = xs[cell], cy = ys[cell];
+                for (int i = 0; i < n; i++) {
+                    for (int j = 0; j < 4 * count; j += 4) {
+                        if (Util.distanceToSegmentSquared(cx[i], cy[i], segments[j], segments[j + 1],
+                                segments[j + 2], segments[j + 3]) < rangeSq) {
+                            if (filter == null || filter.test(ids[cell][i])) { return true; }
+                            break;
+                        }
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Visits every point in the cells overlapping a rectangle. This may
+     * include some points that are slightly outside of the rectangle (but
+     * never misses a point inside of it).
+     * @param left the left edge of the rectangle, in px
+     * @param top the top edge of the rectangle, in px
+     * @param right the right edge of the rectangle, in px
+     * @param bottom the bottom edge of the rectangle, in px
+     * @param visitor receives each of the points
+     */
+    public void forEachNear(float left, float top, float right, float bottom, Visitor visitor) {
+        final int c0 = col(left), c1 = col(right);
+        final int r0 = row(top), r1 = row(bottom);
+        for (int r = r0; r <= r1; r++) {
+            for (int c = c0; c <= c1; c++) {
+                int cell = r * cols + c, n = counts[cell];
+                for (int i = 0; i < n; i++) {
+                    visitor.visit(ids[cell][i], xs[cell][i], ys[cell][i]);
+                }
+            }
+        }
+    }
+
+    /** @return the column of cells containing the x coordinate, clamped to the grid */
+    private int col(float x) { return Math.min(cols - 1, Math.max(0, (int) (x / cellSize))); }
+
+    /** @return the row of cells containing the y coordinate, clamped to the grid */
+    private int row(float y) { return Math.min(rows - 1, Math.max(0, (int) (y / cellSize))); }
+}
@@ -0,0 +1,182 @@
+package edu.moravian.csci299.gravitysnake;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A reference spectator for SpectatorStream. It reads the messages sent by
+ * the stream and rebuilds the snake and the items from them. It only uses
+ * plain Java, so it can run on a computer watching a phone (after
+ * "adb forward tcp:PORT tcp:PORT") or next to the stream on the same JVM.
+ * SpectatorWatch (with the tests) runs one from the command line.
+ */
+public class SpectatorClient implements Closeable {
+    /** The connection to the stream */
+    private final Socket socket;
+    private final DataInputStream in;
+
+    /** The body points, from the head back, each as {x, y} */
+    private final ArrayDeque<float[]> body = new ArrayDeque<>();
+
+    /** The items by their ids, each as {type, x, y, radius} */
+    private final Map<Integer, float[]> items = new HashMap<>();
+
+    /** The last frame number and score received */
+    private int frame, score;
+
+    /** The size of the world */
+    private int width, height;
+
+    /** The number of keyframes and deltas received */
+    private long keyframes, deltas;
+
+    /** The number of bytes received */
+    private long bytesRead = 8;
+
+    /**
+     * Connects to a spectator stream.
+     * @param host the host the stream is on, usually "localhost"
+     * @param port the port of the stream
+     * @throws IOException if the connection fails or isn't to a spectator stream
+     */
+    public SpectatorClient(String host, int port) throws IOException {
+        socket = new Socket(host, port);
+        in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        if (in.readInt() != SpectatorStream.MAGIC || in.readInt() != SpectatorStream.VERSION) {
+            socket.close();
+            throw new IOException("not a spectator stream");
+        }
+    }
+
+    /**
+     * Reads the next message and applies it. Waits for the message if it
+     * hasn't arrived yet.
+     * @return true if a message was read, false if the stream has ended
+     * @throws IOException if reading fails or the message doesn't make sense
+     */
+    public boolean readMessage() throws IOException {
+        final int size;
+        try {
+            size = in.readInt();
+        } catch (EOFException ex) {
+            return false;
+        }
+        bytesRead += 4 + size;
+        final byte type = in.readByte();
+        frame = in.readInt();
+        score = in.readInt();
+        if (type == SpectatorStream.KEYFRAME) {
+            readKeyframe();
+        } else if (type == SpectatorStream.DELTA) {
+            readDelta();
+        } else {
+            throw new IOException("unknown message type " + type);
+        }
+        return true;
+    }
+
+    /** Reads the rest of a keyframe, replacing everything. */
+    private void readKeyframe() throws IOException {
+        width = in.readInt();
+        height = in.readInt();
+        body.clear();
+        for (int n = in.readInt(); n > 0; n--) { body.addLast(new float[] { in.readFloat(), in.readFloat() }); }
+        items.clear();
+        for (int n = in.readInt(); n > 0; n--) {
+            int id = in.readInt();
+            items.put(id, new float[] { in.readByte(), in.readFloat(), in.readFloat(), in.readFloat() });
+        }
+        keyframes++;
+    }
+
+    /** Reads the rest of a delta, applying it to the last frame. */
+    private void readDelta() throws IOException {
+        for (int n = in.readInt(); n > 0; n--) { body.addFirst(new float[] { in.readFloat(), in.readFloat() }); }
+        for (int n = in.readInt(); n > 0 && !body.isEmpty(); n--) { body.removeLast(); }
+        for (int n = in.readInt(); n > 0; n--) {
+            byte op = in.readByte();
+            int id = in.readInt();
+            if (op == SpectatorStream.ITEM_ADDED) {
+                items.put(id, new float[] { in.readByte(), in.readFloat(), in.readFloat(), in.readFloat() });
+            } else if (op == SpectatorStream.ITEM_REMOVED) {
+                items.remove(id);
+            } else if (op == SpectatorStream.ITEM_MOVED) {
+                float x = in.readFloat(), y = in.readFloat();
+                float[] item = items.get(id);
+                if (item == null) { throw new IOException("moved an unknown item " + id); }
+                item[1] = x;
+                item[2] = y;
+            } else {
+                throw new IOException("unknown item change " + op);
+            }
+        }
+        deltas++;
+    }
+
+    /**
+     * @return the frame number of the last message
+     */
+    public int getFrame() { return frame; }
+
+    /**
+     * @return the score of the last message
+     */
+    public int getScore() { return score; }
+
+    /**
+     * @return the width of the world, in px
+     */
+    public int getWidth() { return width; }
+
+    /**
+     * @return the height of the world, in px
+     */
+    public int getHeight() { return height; }
+
+    /**
+     * @return the number of body points
+     */
+    public int getBodySize() { return body.size(); }
+
+    /**
+     * @return a copy of the body points, from the head back, each as {x, y}
+     */
+    public List<float[]> getBody() { return new ArrayList<>(body); }
+
+    /**
+     * @return the items by their ids, each as {type, x, y, radius}
+     */
+    public Map<Integer, float[]> getItems() { return Collections.unmodifiableMap(items); }
+
+    /**
+     * @return the number of keyframes received
+     */
+    public long getKeyframeCount() { return keyframes; }
+
+    /**
+     * @return the number of deltas received
+     */
+    public long getDeltaCount() { return deltas; }
+
+    /**
+     * @return the number of bytes received
+     */
+    public long getBytesRead() { return bytesRead; }
+
+    /**
+     * Disconnects from the stream.
+     * @throws IOException if closing the connection fails
+     */
+    @Override
+    public void close() throws IOException { socket.close(); }
+}
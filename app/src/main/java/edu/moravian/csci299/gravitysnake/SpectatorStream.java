@@ -0,0 +1,421 @@
+package edu.moravian.csci299.gravitysnake;
+
+import android.graphics.PointF;
+import android.util.Log;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Streams the frames of a game over a local socket to a spectator (or
+ * recorder), such as SpectatorClient. Only loopback connections are
+ * accepted, use "adb forward" to watch from a computer. One spectator is
+ * served at a time, a new connection replaces the old one.
+ *
+ * When a spectator connects it is sent a keyframe with the whole game, after
+ * that each frame only sends what changed: the new head points, how many
+ * tail points were dropped, and the items that were added, removed, or
+ * moved. So the size of each frame doesn't depend on the length of the snake.
+ *
+ * The game thread only copies the changes into a frame object, the frames
+ * are encoded and sent on a separate thread. Frames wait in a small queue,
+ * and if the spectator can't keep up and the queue is full the changes are
+ * merged into the next frame instead. If too many changes pile up that way
+ * they are thrown out and a new keyframe is sent.
+ *
+ * The stream starts with the int SpectatorStream.MAGIC and the int VERSION.
+ * Then each message is an int with the number of bytes after it, a byte with
+ * the message type, the int frame number, and the int score. A KEYFRAME then
+ * has the int width and height of the world, the int number of body points
+ * followed by the float x and y of each (from the head back), and the int
+ * number of items followed by the int id, byte type, and float x, y, and
+ * radius of each. A DELTA then has the int number of new head points
+ * followed by the float x and y of each (oldest first), the int number of
+ * tail points dropped, and the int number of item changes. Each change is a
+ * byte (ITEM_ADDED, ITEM_REMOVED, or ITEM_MOVED) and the int id, then for an
+ * added item the byte type and float x, y, and radius, and for a moved item
+ * the float x and y. All numbers are big-endian.
+ */
+public class SpectatorStream implements ItemStore.Listener {
+    /** The first int sent to each spectator, "SNKV" */
+    public final static int MAGIC = 0x534E4B56;
+
+    /** The version of the protocol */
+    public final static int VERSION = 1;
+
+    /** The types of messages */
+    public final static byte KEYFRAME = 1, DELTA = 2;
+
+    /** The types of item changes in a delta */
+    public final static byte ITEM_ADDED = 1, ITEM_REMOVED = 2, ITEM_MOVED = 3;
+
+    /** The number of frames that can wait to be sent */
+    private final static int QUEUE_SIZE = 8;
+
+    /** Once this many head points or item changes are merged into one frame a keyframe is sent instead */
+    private final static int MAX_MERGED_CHANGES = 1024;
+
+    /**
+     * A connected spectator. The socket, its stream, and the number of the
+     * connection never change, so the threads always see all three of the
+     * same spectator.
+     */
+    private static class Spectator {
+        /** The spectator's socket */
+        final Socket socket;
+
+        /** The stream frames are written to */
+        final OutputStream out;
+
+        /** Counts connections, so frames made for an old connection can be thrown out */
+        final int connection;
+
+        Spectator(Socket socket, OutputStream out, int connection) {
+            this.socket = socket;
+            this.out = out;
+            this.connection = connection;
+        }
+    }
+
+    /** The changes of one frame (or several merged frames), reused once sent */
+    private static class Frame {
+        /** True if this is a keyframe, in which case the body and items are the whole game */
+        boolean keyframe;
+
+        /** The connection the frame was made for */
+        int connection;
+
+        /** The frame number and score at the end of the frame */
+        int frame, score;
+
+        /** The size of the world, only for keyframes */
+        int width, height;
+
+        /** The new head points (oldest first), or the whole body for a keyframe (head first) */
+        float[] bodyXs = new float[64], bodyYs = new float[64];
+        int bodyCount;
+
+        /** The number of tail points dropped */
+        int tailDropped;
+
+        /** The item changes, or all of the items (as additions) for a keyframe */
+        byte[] itemOps = new byte[16], itemTypes = new byte[16];
+        int[] itemIds = new int[16];
+        float[] itemXs = new float[16], itemYs = new float[16], itemRadii = new float[16];
+        int itemCount;
+
+        /** Empties the frame so it can be filled again. */
+        void reset() {
+            keyframe = false;
+            bodyCount = tailDropped = itemCount = 0;
+        }
+
+        /**
+         * @return true if so many changes were merged into the frame that a
+         *         keyframe would be better
+         */
+        boolean isFull() { return bodyCount >= MAX_MERGED_CHANGES || itemCount >= MAX_MERGED_CHANGES; }
+
+        /** Adds a body point. */
+        void addBodyPoint(float x, float y) {
+            if (bodyCount == bodyXs.length) {
+                bodyXs = Arrays.copyOf(bodyXs, 2 * bodyCount);
+                bodyYs = Arrays.copyOf(bodyYs, 2 * bodyCount);
+            }
+            bodyXs[bodyCount] = x;
+            bodyYs[bodyCount] = y;
+            bodyCount++;
+        }
+
+        /** Adds an item change. */
+        void addItem(byte op, int id, int type, float x, float y, float radius) {
+            if (itemCount == itemOps.length) {
+                int capacity = 2 * itemCount;
+                itemOps = Arrays.copyOf(itemOps, capacity);
+                itemTypes = Arrays.copyOf(itemTypes, capacity);
+                itemIds = Arrays.copyOf(itemIds, capacity);
+                itemXs = Arrays.copyOf(itemXs, capacity);
+                itemYs = Arrays.copyOf(itemYs, capacity);
+                itemRadii = Arrays.copyOf(itemRadii, capacity);
+            }
+            itemOps[itemCount] = op;
+            itemIds[itemCount] = id;
+            itemTypes[itemCount] = (byte) type;
+            itemXs[itemCount] = x;
+            itemYs[itemCount] = y;
+            itemRadii[itemCount] = radius;
+            itemCount++;
+        }
+
+        /** @return the number of bytes of the message for this frame, not counting the length */
+        int getEncodedSize() {
+            int size = 1 + 4 + 4 + 4 + 8 * bodyCount + 4;
+            if (keyframe) { return size + 8 + 17 * itemCount; }
+            size += 4;
+            for (int i = 0; i < itemCount; i++) {
+                size += itemOps[i] == ITEM_ADDED ? 18 : itemOps[i] == ITEM_MOVED ? 13 : 5;
+            }
+            return size;
+        }
+
+        /** Writes the message for this frame (with its length) to a buffer. */
+        void encode(ByteBuffer out) {
+            out.putInt(getEncodedSize());
+            out.put(keyframe ? KEYFRAME : DELTA).putInt(frame).putInt(score);
+            if (keyframe) { out.putInt(width).putInt(height); }
+            out.putInt(bodyCount);
+            for (int i = 0; i < bodyCount; i++) { out.putFloat(bodyXs[i]).putFloat(bodyYs[i]); }
+            if (keyframe) {
+                out.putInt(itemCount);
+                for (int i = 0; i < itemCount; i++) {
+                    out.putInt(itemIds[i]).put(itemTypes[i]).putFloat(itemXs[i]).putFloat(itemYs[i]).putFloat(itemRadii[i]);
+                }
+                return;
+            }
+            out.putInt(tailDropped).putInt(itemCount);
+            for (int i = 0; i < itemCount; i++) {
+                out.put(itemOps[i]).putInt(itemIds[i]);
+                if (itemOps[i] == ITEM_ADDED) {
+                    out.put(itemTypes[i]).putFloat(itemXs[i]).putFloat(itemYs[i]).putFloat(itemRadii[i]);
+                } else if (itemOps[i] == ITEM_MOVED) {
+                    out.putFloat(itemXs[i]).putFloat(itemYs[i]);
+                }
+            }
+        }
+    }
+
+    /** Frames waiting to be sent */
+    private final ArrayBlockingQueue<Frame> queue = new ArrayBlockingQueue<>(QUEUE_SIZE);
+
+    /** Frames that can be filled, there are enough that one is always free after a frame is queued */
+    private final ArrayBlockingQueue<Frame> free = new ArrayBlockingQueue<>(QUEUE_SIZE + 2);
+
+    /** The frame being filled by the game thread */
+    private Frame current;
+
+    /** Used by the game thread to get the head points of each frame */
+    private final PointF step = new PointF();
+
+    /** The number of body pieces at the end of the last frame */
+    private int lastPieceCount;
+
+    /** The connection the game thread last made a frame for */
+    private int lastConnection;
+
+    /** True if the next frame must be a keyframe */
+    private boolean keyframeNeeded = true;
+
+    /** The current spectator, or null if there is none */
+    private final AtomicReference<Spectator> spectator = new AtomicReference<>();
+
+    /** The number of spectators that have connected, only used by the accept thread */
+    private int connections;
+
+    /** The socket spectators connect to */
+    private final ServerSocket server;
+
+    /** The threads accepting spectators and sending frames */
+    private final Thread acceptThread, sendThread;
+
+    /** True once the stream is closed */
+    private volatile boolean closed;
+
+    /** The number of frames sent and the number merged into later frames */
+    private volatile long framesSent, framesMerged;
+
+    /**
+     * Opens the stream on a loopback port and starts waiting for spectators.
+     * @param port the port to listen on, or 0 for any free port
+     * @throws IOException if the port can't be used
+     */
+    public SpectatorStream(int port) throws IOException {
+        server = new ServerSocket(port, 1, InetAddress.getLoopbackAddress());
+        for (int i = 0; i < QUEUE_SIZE + 1; i++) { free.add(new Frame()); }
+        current = new Frame();
+        acceptThread = new Thread(this::acceptSpectators, "SpectatorAccept");
+        sendThread = new Thread(this::sendFrames, "SpectatorSend");
+        acceptThread.setDaemon(true);
+        sendThread.setDaemon(true);
+        acceptThread.start();
+        sendThread.start();
+    }
+
+    /**
+     * @return the port spectators connect to
+     */
+    public int getPort() { return server.getLocalPort(); }
+
+    /**
+     * @return true if a spectator is connected
+     */
+    public boolean hasSpectator() { return spectator.get() != null; }
+
+    /**
+     * @return the number of frames sent to spectators
+     */
+    public long getFramesSent() { return framesSent; }
+
+    /**
+     * @return the number of frames that couldn't be sent right away and were
+     *         merged into a later frame
+     */
+    public long getFramesMerged() { return framesMerged; }
+
+    /**
+     * Makes the next frame a keyframe, for example when the game was
+     * replaced by a new or restored one. Only call from the game thread.
+     */
+    public void requestKeyframe() { keyframeNeeded = true; }
+
+    /**
+     * Finishes the current frame of a game and hands it to the sending
+     * thread. The time this takes depends only on how much changed, except
+     * for keyframes. Only call from the game thread.
+     * @param game the game that just finished a frame
+     */
+    public void endFrame(SnakeGame game) {
+        final Spectator spectator = this.spectator.get();
+        if (spectator == null || game.hasNotStarted()) { return; }
+        final SnakeBody snake = game.getSnake();
+        final Frame frame = current;
+
+        final int connection = spectator.connection;
+        if (connection != lastConnection || keyframeNeeded || frame.keyframe || frame.isFull()) {
+            // A new spectator, a new game, or a keyframe/merged frame that couldn't be sent
+            frame.reset();
+            frame.keyframe = true;
+            frame.width = game.getWorldWidth();
+            frame.height = game.getWorldHeight();
+            List<PointF> body = snake.getBody();
+            for (int i = 0; i < body.size(); i++) { frame.addBodyPoint(body.get(i).x, body.get(i).y); }
+            ItemStore items = game.getItems();
+            for (int i = 0; i < items.size(); i++) {
+                frame.addItem(ITEM_ADDED, items.getId(i), items.getType(i), items.getX(i), items.getY(i), items.getRadius(i));
+            }
+            lastConnection = connection;
+            keyframeNeeded = false;
+        } else {
+            final int steps = snake.getLastMoveSteps();
+            for (int j = steps - 1; j >= 0; j--) {
+                snake.getLastMoveStep(j, step);
+                frame.addBodyPoint(step.x, step.y);
+            }
+            frame.tailDropped += lastPieceCount + steps - snake.getPieceCount();
+        }
+        lastPieceCount = snake.getPieceCount();
+        frame.connection = connection;
+        frame.frame = game.getFramesPlayed();
+        frame.score = game.getScore();
+
+        if (queue.offer(frame)) {
+            current = free.poll();
+            current.reset();
+        } else {
+            framesMerged++;
+        }
+    }
+
+    /**
+     * Records an item being added. Only call from the game thread.
+     * @see ItemStore.Listener#itemAdded(int, int, float, float, float)
+     */
+    @Override
+    public void itemAdded(int id, int type, float x, float y, float radius) {
+        if (spectator.get() != null && !current.keyframe) { current.addItem(ITEM_ADDED, id, type, x, y, radius); }
+    }
+
+    /**
+     * Records an item being removed. Only call from the game thread.
+     * @see ItemStore.Listener#itemRemoved(int)
+     */
+    @Override
+    public void itemRemoved(int id) {
+        if (spectator.get() != null && !current.keyframe) { current.addItem(ITEM_REMOVED, id, 0, 0, 0, 0); }
+    }
+
+    /**
+     * Records an item being moved. Only call from the game thread.
+     * @see ItemStore.Listener#itemMoved(int, float, float)
+     */
+    @Override
+    public void itemMoved(int id, float x, float y) {
+        if (spectator.get() != null && !current.keyframe) { current.addItem(ITEM_MOVED, id, 0, x, y, 0); }
+    }
+
+    /**
+     * Stops the stream, disconnecting the spectator.
+     */
+    public void close() {
+        closed = true;
+        try { server.close(); } catch (IOException ignored) { }
+        Spectator old = spectator.getAndSet(null);
+        if (old != null) { disconnect(old.socket); }
+        sendThread.interrupt();
+    }
+
+    /** Runs on the accept thread, waiting for spectators. */
+    private void acceptSpectators() {
+        while (!closed) {
+            try {
+                Socket socket = server.accept();
+                socket.setTcpNoDelay(true);
+                OutputStream out = new BufferedOutputStream(socket.getOutputStream());
+                ByteBuffer header = ByteBuffer.allocate(8).putInt(MAGIC).putInt(VERSION);
+                out.write(header.array());
+                out.flush();
+
+                Spectator old = spectator.getAndSet(new Spectator(socket, out, ++connections));
+                if (old != null) { disconnect(old.socket); }
+            } catch (IOException ex) {
+                if (!closed) { Log.w("SpectatorStream", "could not accept spectator", ex); }
+            }
+        }
+    }
+
+    /** Runs on the send thread, encoding and sending the queued frames. */
+    private void sendFrames() {
+        ByteBuffer buffer = ByteBuffer.allocate(16 * 1024);
+        while (!closed) {
+            Frame frame;
+            try {
+                frame = queue.take();
+            } catch (InterruptedException ex) {
+                return;
+            }
+            final Spectator spectator = this.spectator.get();
+            if (spectator != null && frame.connection == spectator.connection) {
+                int size = 4 + frame.getEncodedSize();
+                if (buffer.capacity() < size) { buffer = ByteBuffer.allocate(Math.max(size, 2 * buffer.capacity())); }
+                buffer.clear();
+                frame.encode(buffer);
+                try {
+                    spectator.out.write(buffer.array(), 0, size);
+                    spectator.out.flush();
+                    framesSent++;
+                } catch (IOException ex) {
+                    this.spectator.compareAndSet(spectator, null);
+                    disconnect(spectator.socket);
+                }
+            }
+            free.offer(frame);
+        }
+    }
+
+    /**
+     * Closes the connection to a spectator.
+     * @param socket the spectator's socket, may be null
+     */
+    private static void disconnect(Socket socket) {
+        if (socket == null) { return; }
+        try { socket.close(); } catch (IOException ignored) { }
+    }
+}
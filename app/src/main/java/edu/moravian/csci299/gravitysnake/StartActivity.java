@@ -21,12 +21,20 @@ import java.io.IOException;
  * This class is the StartActivity. It gets created in the beginning activity_start layout.
  */
 public class StartActivity extends AppCompatActivity implements View.OnClickListener, SeekBar.OnSeekBarChangeListener {
+    /** The number of bots to play against in arena mode */
+    private final static int ARENA_BOT_COUNT = 3;
+
     private MediaPlayer mediaPlayer;
     private SharedPreferences preferences;
 
     private SeekBar levelSelectBar;
     private TextView levelText;
     private TextView highScoreText;
+    private TextView statsText;
+    private SwitchCompat arenaSwitch;
+
+    /** The levels after the built in ones, null if the pack couldn't be loaded */
+    private LevelPack levelPack;
 
     /**
      * Initializes preferences, the start Button, the level select SeekBar,
@@ -45,9 +53,12 @@ public class StartActivity extends AppCompatActivity implements View.OnClickList
 
         levelSelectBar = findViewById(R.id.levelSelectBar);
         levelSelectBar.setOnSeekBarChangeListener(this);
+        loadLevelPack();
 
         levelText = findViewById(R.id.levelText);
         highScoreText = findViewById(R.id.highScoreText);
+        statsText = findViewById(R.id.statsText);
+        arenaSwitch = findViewById(R.id.arenaSwitch);
         setLevelAndScoreText();
 
         //set up for music, mediaPlayer and music switch
@@ -66,28 +77,70 @@ public class StartActivity extends AppCompatActivity implements View.OnClickList
     }
 
     /**
-     * Updates the level and score text.
+     * Loads the level pack from the assets and makes room for its levels on
+     * the level select SeekBar, after the built in levels. Only the headers
+     * of the pack and of each level are read, to make sure every level can
+     * be shown. If the pack is damaged only the built in levels are offered
+     * (GameActivity handles a damaged pack the same way).
+     */
+    private void loadLevelPack()
+    {
+        try {
+            LevelPack pack = LevelPack.openAsset(this);
+            for (int i = 0; i < pack.getLevelCount(); i++) { pack.getLevel(i).getName(); }
+            levelPack = pack;
+            levelSelectBar.setMax(getBuiltInLevelCount() - 1 + levelPack.getLevelCount());
+        } catch (IOException | RuntimeException ex) {
+            Log.w("StartActivity", "could not load level pack", ex);
+        }
+    }
+
+    /**
+     * @return the number of built in levels, the levels from the pack come after these
+     */
+    private int getBuiltInLevelCount() { return getResources().getStringArray(R.array.level_name_array).length; }
+
+    /**
+     * Updates the level, score, and stats text.
      */
     private void setLevelAndScoreText()
     {
         int currentLevel = levelSelectBar.getProgress();
 
-        String text = getResources().getStringArray(R.array.level_name_array)[currentLevel];
+        String[] names = getResources().getStringArray(R.array.level_name_array);
+        String text = currentLevel < names.length ? names[currentLevel] :
+                levelPack.getLevel(currentLevel - names.length).getName();
         levelText.setText(text);
 
         int highScore = getHighScore(preferences, this, currentLevel);
         highScoreText.setText(String.format(getString(R.string.high_score_text), highScore));
+
+        LevelStats stats = LevelStats.load(preferences, this, currentLevel);
+        if (stats.getGameCount() == 0) {
+            statsText.setText(R.string.stats_text_empty);
+        } else {
+            QuantileSketch scores = stats.getScores(), times = stats.getTimes();
+            statsText.setText(String.format(getString(R.string.stats_text), stats.getGameCount(),
+                    scores.getMean(), scores.getQuantile(0.5), scores.getQuantile(0.9), scores.getQuantile(0.99),
+                    times.getMean(), times.getQuantile(0.5), times.getQuantile(0.9), times.getQuantile(0.99)));
+        }
     }
 
     /**
      * Called when the start Button is clicked.
-     * Sends an intent to start GameActivity with extra 'level' being the level chosen.
+     * Sends an intent to start GameActivity with extra 'level' being the level
+     * chosen, and for levels from the level pack extra 'packLevel' being the
+     * index of the level in the pack. If the arena switch is on, extra
+     * 'arenaBots' is the number of bots to play against in an arena.
      * @param v View that was clicked.
      */
     @Override
     public void onClick(View v) {
         Intent intent = new Intent(this, GameActivity.class);
-        intent.putExtra("level", levelSelectBar.getProgress());
+        int level = levelSelectBar.getProgress();
+        intent.putExtra("level", level);
+        if (level >= getBuiltInLevelCount()) { intent.putExtra("packLevel", level - getBuiltInLevelCount()); }
+        if (arenaSwitch.isChecked()) { intent.putExtra("arenaBots", ARENA_BOT_COUNT); }
         startActivity(intent);
     }
 
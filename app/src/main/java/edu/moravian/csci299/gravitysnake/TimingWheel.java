@@ -0,0 +1,136 @@
+package edu.moravian.csci299.gravitysnake;
+
+import java.util.Arrays;
+
+/**
+ * A hashed timing wheel for events that should happen some number of frames
+ * in the future. The wheel has a fixed number of slots and an event is put in
+ * the slot for the frame it is due (wrapping around the wheel). Each frame
+ * only the events in one slot are looked at, so scheduling an event and
+ * firing it both take constant time no matter how far ahead it is.
+ *
+ * Events are just a pair of ints, an event type and a payload, whose meaning
+ * is up to whoever uses the wheel.
+ */
+public class TimingWheel {
+    /** Receives each event as it becomes due. */
+    public interface Listener {
+        /**
+         * @param event the type of the event
+         * @param payload the payload the event was scheduled with
+         */
+        void fire(int event, int payload);
+    }
+
+    /** The due frame, type, and payload of the events in each slot */
+    private final int[][] dues, events, payloads;
+
+    /** The number of events in each slot */
+    private final int[] counts;
+
+    /** Used to turn a frame into a slot, the number of slots is always a power of 2 */
+    private final int mask;
+
+    /** The current frame */
+    private int frame;
+
+    /** The total number of events waiting */
+    private int size;
+
+    /**
+     * Create an empty wheel at frame 0.
+     * @param slotCount the number of slots, rounded up to a power of 2.
+     *                  Events further ahead than this still work, but are
+     *                  looked at once per turn of the wheel.
+     */
+    public TimingWheel(int slotCount) {
+        int n = Integer.highestOneBit(Math.max(1, slotCount - 1)) << 1;
+        mask = n - 1;
+        dues = new int[n][];
+        events = new int[n][];
+        payloads = new int[n][];
+        counts = new int[n];
+    }
+
+    /**
+     * @return the current frame
+     */
+    public int getFrame() { return frame; }
+
+    /**
+     * @return the number of events waiting to fire
+     */
+    public int size() { return size; }
+
+    /**
+     * Removes all events and goes to a frame.
+     * @param frame the frame to go to, 0 for a new game
+     */
+    public void clear(int frame) {
+        Arrays.fill(counts, 0);
+        size = 0;
+        this.frame = frame;
+    }
+
+    /**
+     * Schedule an event.
+     * @param delay the number of frames from now that the event fires, at least 1
+     * @param event the type of the event
+     * @param payload any extra information for the event
+     */
+    public void schedule(int delay, int event, int payload) {
+        scheduleAt(frame + Math.max(1, delay), event, payload);
+    }
+
+    /**
+     * Schedule an event for a particular frame.
+     * @param due the frame the event fires, after the current frame
+     * @param event the type of the event
+     * @param payload any extra information for the event
+     * @throws IllegalArgumentException if the frame is not after the current
+     *         one, the event would never fire
+     */
+    public void scheduleAt(int due, int event, int payload) {
+        if (due <= frame) { throw new IllegalArgumentException("event due at frame " + due + " but already at " + frame); }
+        final int slot = due & mask;
+        int n = counts[slot];
+        if (dues[slot] == null) {
+            dues[slot] = new int[4];
+            events[slot] = new int[4];
+            payloads[slot] = new int[4];
+        } else if (n == dues[slot].length) {
+            dues[slot] = Arrays.copyOf(dues[slot], 2 * n);
+            events[slot] = Arrays.copyOf(events[slot], 2 * n);
+            payloads[slot] = Arrays.copyOf(payloads[slot], 2 * n);
+        }
+        dues[slot][n] = due;
+        events[slot][n] = event;
+        payloads[slot][n] = payload;
+        counts[slot] = n + 1;
+        size++;
+    }
+
+    /**
+     * Moves on to the next frame and fires all of the events due then. The
+     * listener may schedule more events while being told about one.
+     * @param listener receives each event that is due
+     */
+    public void advance(Listener listener) {
+        frame++;
+        final int slot = frame & mask;
+        int i = 0;
+        while (i < counts[slot]) {
+            if (dues[slot][i] != frame) { i++; continue; } // due on a later turn of the wheel
+            int event = events[slot][i], payload = payloads[slot][i];
+
+            // Move the last event of the slot into this one before firing (which may add more)
+            int last = --counts[slot];
+            dues[slot][i] = dues[slot][last];
+            events[slot][i] = events[slot][last];
+            payloads[slot][i] = payloads[slot][last];
+            size--;
+
+            listener.fire(event, payload);
+        }
+    }
+}
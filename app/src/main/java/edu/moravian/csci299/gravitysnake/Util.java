@@ -21,4 +21,47 @@ public class Util {
         float dy = a.y - b.y;
         return dx*dx + dy*dy < range*range;
     }
+
+    /**
+     * Gets the squared distance from a point to a line segment.
+     * @param px the x coordinate of the point
+     * @param py the y coordinate of the point
+     * @param ax the x coordinate of the start of the segment
+     * @param ay the y coordinate of the start of the segment
+     * @param bx the x coordinate of the end of the segment
+     * @param by the y coordinate of the end of the segment
+     * @return the squared distance from the point to the closest point on the segment
+     */
+    public static float distanceToSegmentSquared(float px, float py, float ax, float ay, float bx, float by) {
+        float abx = bx - ax, aby = by - ay;
+        float apx = px - ax, apy = py - ay;
+        float lenSq = abx*abx + aby*aby;
+        float t = lenSq == 0 ? 0 : Math.max(0, Math.min(1, (apx*abx + apy*aby) / lenSq));
+        float dx = apx - t*abx, dy = apy - t*aby;
+        return dx*dx + dy*dy;
+    }
+
+    /**
+     * Gets the squared distance between two line segments.
+     * @param ax the x coordinate of the start of the first segment
+     * @param ay the y coordinate of the start of the first segment
+     * @param bx the x coordinate of the end of the first segment
+     * @param by the y coordinate of the end of the first segment
+     * @param cx the x coordinate of the start of the second segment
+     * @param cy the y coordinate of the start of the second segment
+     * @param dx the x coordinate of the end of the second segment
+     * @param dy the y coordinate of the end of the second segment
+     * @return the squared distance between the closest points of the segments, 0 if they cross
+     */
+    public static float segmentsDistanceSquared(float ax, float ay, float bx, float by,
+                                                float cx, float cy, float dx, float dy) {
+        // The segments cross if each one has the ends of the other on opposite sides of it
+        float d1 = (bx - ax) * (cy - ay) - (by - ay) * (cx - ax), d2 = (bx - ax) * (dy - ay) - (by - ay) * (dx - ax);
+        float d3 = (dx - cx) * (ay - cy) - (dy - cy) * (ax - cx), d4 = (dx - cx) * (by - cy) - (dy - cy) * (bx - cx);
+        if (((d1 > 0 && d2 < 0) || (d1 < 0 && d2 > 0)) && ((d3 > 0 && d4 < 0) || (d3 < 0 && d4 > 0))) { return 0; }
+
+        // Otherwise the closest points include an end of one of the segments
+        return Math.min(Math.min(distanceToSegmentSquared(ax, ay, cx, cy, dx, dy), distanceToSegmentSquared(bx, by, cx, cy, dx, dy)),
+                Math.min(distanceToSegmentSquared(cx, cy, ax, ay, bx, by), distanceToSegmentSquared(dx, dy, ax, ay, bx, by)));
+    }
 }
@@ -0,0 +1,173 @@
+package edu.moravian.csci299.gravitysnake;
+
+import org.junit.Assume;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * A benchmark for the arena, without a device. It plays arenas full of bots
+ * with the real SnakeArena.update() and measures how long each tick takes,
+ * to see how many snakes (and how long) fit in the 16 ms a frame has at 60
+ * frames a second. The tick is timed with the wall clock since the snakes
+ * are split across threads once there are enough of them.
+ *
+ * The bots all chase the same food, so they crash into each other. When
+ * fewer than half of them are left the arena is started again (that tick is
+ * not counted), so the number of snakes stays close to the scenario's.
+ *
+ * It only runs when asked for, with for example:
+ * ./gradlew testDebugUnitTest --tests '*ArenaBenchmark' -Dbench=true
+ *
+ * The settings (as system properties) are bench.ticks, bench.warmup, and
+ * bench.out (the folder for the reports, build/reports/arena by default).
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class ArenaBenchmark {
+    /** The size of the arena, in px, and its density (a common phone) */
+    private final static int SCREEN_WIDTH = 1080, SCREEN_HEIGHT = 2200;
+    private final static float DENSITY = 2.75f;
+
+    /** The time each tick has at 60 frames a second, in ns */
+    private final static long TICK_BUDGET_NANOS = 1_000_000_000L / 60;
+
+    /** An arena to play */
+    private static class Scenario {
+        final int snakes, length;
+        final float scale;
+
+        Scenario(int snakes, int length, float scale) {
+            this.snakes = snakes;
+            this.length = length;
+            this.scale = scale;
+        }
+    }
+
+    /** The results of playing one scenario */
+    private static class Result {
+        int snakes, length, width, height, ticks, restarts, overBudget;
+        double meanAlive, meanNanos;
+        long p50, p90, p99, max;
+    }
+
+    /**
+     * Runs the benchmark, if it was asked for.
+     * @throws IOException if the reports can't be written
+     */
+    @Test
+    public void benchmark() throws IOException {
+        Assume.assumeTrue("arena benchmark only runs with -Dbench=true", Boolean.getBoolean("bench"));
+        final int ticks = Integer.getInteger("bench.ticks", 2000);
+        final int warmup = Integer.getInteger("bench.warmup", 500);
+        final File out = new File(System.getProperty("bench.out", "build/reports/arena"));
+
+        Scenario[] scenarios = {
+                new Scenario(4, 100, 1),
+                new Scenario(16, 100, 1),
+                new Scenario(16, 1000, 2),
+                new Scenario(64, 200, 2),
+                new Scenario(64, 1000, 4),
+        };
+        List<Result> results = new ArrayList<>();
+        for (Scenario scenario : scenarios) {
+            Result result = run(scenario, warmup, ticks);
+            results.add(result);
+            System.out.printf(Locale.US, "%d snakes of %d in %dx%d: mean %.2f alive, p50 %.3f ms, p99 %.3f ms, " +
+                            "max %.3f ms, %d of %d ticks over budget%n",
+                    result.snakes, result.length, result.width, result.height, result.meanAlive, result.p50 / 1e6,
+                    result.p99 / 1e6, result.max / 1e6, result.overBudget, result.ticks);
+        }
+        writeReports(out, results);
+    }
+
+    /**
+     * Plays a scenario.
+     * @param scenario the scenario
+     * @param warmup the number of ticks to play before timing
+     * @param ticks the number of ticks to time
+     * @return the results
+     */
+    private static Result run(Scenario scenario, int warmup, int ticks) {
+        final int width = (int) (SCREEN_WIDTH * scenario.scale), height = (int) (SCREEN_HEIGHT * scenario.scale);
+        SnakeArena arena = new SnakeArena(42);
+        arena.setDpToPxFactor(DENSITY);
+        arena.setStartingLength(scenario.length);
+        arena.setLengthIncreasePerFood(0);
+        arena.setWallPlacementProbability(0.01);
+        Result result = new Result();
+        result.snakes = scenario.snakes;
+        result.length = scenario.length;
+        result.width = width;
+        result.height = height;
+
+        arena.startGame(width, height, 0, scenario.snakes);
+        long[] times = new long[ticks];
+        long aliveTotal = 0;
+        for (int i = -warmup; i < ticks; i++) {
+            if (2 * arena.getAliveCount() < scenario.snakes) {
+                arena.startGame(width, height, 0, scenario.snakes);
+                if (i >= 0) { result.restarts++; }
+            }
+            long start = System.nanoTime();
+            arena.update();
+            long time = System.nanoTime() - start;
+            if (i >= 0) {
+                times[i] = time;
+                aliveTotal += arena.getAliveCount();
+                if (time > TICK_BUDGET_NANOS) { result.overBudget++; }
+            }
+        }
+
+        result.ticks = ticks;
+        result.meanAlive = (double) aliveTotal / ticks;
+        long total = 0;
+        for (long t : times) { total += t; }
+        result.meanNanos = (double) total / ticks;
+        Arrays.sort(times);
+        result.p50 = times[(int) (0.5 * (ticks - 1))];
+        result.p90 = times[(int) (0.9 * (ticks - 1))];
+        result.p99 = times[(int) (0.99 * (ticks - 1))];
+        result.max = times[ticks - 1];
+        return result;
+    }
+
+    /**
+     * Writes the results as arena.csv and arena.json.
+     * @param out the folder to write to
+     * @param results the results of each scenario
+     * @throws IOException if the files can't be written
+     */
+    private static void writeReports(File out, List<Result> results) throws IOException {
+        if (!out.isDirectory() && !out.mkdirs()) { throw new IOException("could not make " + out); }
+        try (PrintWriter csv = new PrintWriter(new FileWriter(new File(out, "arena.csv")))) {
+            csv.println("snakes,length,width,height,ticks,restarts,mean_alive,mean_ns,p50_ns,p90_ns,p99_ns,max_ns,over_budget");
+            for (Result r : results) {
+                csv.printf(Locale.US, "%d,%d,%d,%d,%d,%d,%.2f,%.1f,%d,%d,%d,%d,%d%n", r.snakes, r.length, r.width,
+                        r.height, r.ticks, r.restarts, r.meanAlive, r.meanNanos, r.p50, r.p90, r.p99, r.max, r.overBudget);
+            }
+        }
+        try (PrintWriter json = new PrintWriter(new FileWriter(new File(out, "arena.json")))) {
+            json.printf("{\"density\": %.2f, \"budgetNs\": %d, \"results\": [%n", DENSITY, TICK_BUDGET_NANOS);
+            for (int i = 0; i < results.size(); i++) {
+                Result r = results.get(i);
+                json.printf(Locale.US, "  {\"snakes\": %d, \"length\": %d, \"width\": %d, \"height\": %d, " +
+                                "\"ticks\": %d, \"restarts\": %d, \"meanAlive\": %.2f, \"meanNs\": %.1f, \"p50Ns\": %d, " +
+                                "\"p90Ns\": %d, \"p99Ns\": %d, \"maxNs\": %d, \"overBudget\": %d}%s%n",
+                        r.snakes, r.length, r.width, r.height, r.ticks, r.restarts, r.meanAlive, r.meanNanos, r.p50,
+                        r.p90, r.p99, r.max, r.overBudget, i + 1 < results.size() ? "," : "");
+            }
+            json.println("]}");
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package edu.moravian.csci299.gravitysnake;
+
+import android.graphics.PointF;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Moves snakes along scripted paths and checks the points BodyDecimator
+ * keeps up to date against points picked from scratch for the same body:
+ * every step is within the tolerance of the lines drawn, the lines start
+ * near the tail and end at the head, and there are about as many of them.
+ * Also checks that an update only looks at the steps taken since the last
+ * one, even for a long straight snake.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class BodyDecimatorTest {
+    /** The factor to convert dp to px (a common phone) */
+    private final static float DENSITY = 2.75f;
+
+    /** The tolerance of the decimators, in px */
+    private final static float TOLERANCE = 1.5f;
+
+    /** How far rounding may take a step past the tolerance, in px */
+    private final static float ROUNDING = 1e-3f;
+
+    @Test
+    public void matchesDecimatingFromScratch() {
+        Snake snake = new Snake(new PointF(5000, 5000), DENSITY, 10);
+        snake.increaseLength(1500);
+        BodyDecimator decimator = new BodyDecimator(TOLERANCE);
+        Random random = new Random(1);
+        double direction = 0;
+        int maxExtra = 0, lastHeadSeq = 0;
+        for (int frame = 0; frame < 6000; frame++) {
+            // Curves, straight parts, and wiggles, moving different distances each frame
+            int part = frame / 300 % 4;
+            direction += part == 0 ? 0.03 : part == 1 ? 0 : part == 2 ? -0.05 : 0.3 * (random.nextDouble() - 0.5);
+            snake.move(direction, 3 + random.nextInt(4));
+            if (random.nextInt(5) == 0) { continue; } // not every frame is drawn
+
+            final long visited = decimator.getStepsVisited();
+            final boolean started = decimator.getRebuildCount() > 0;
+            final int headSeq = snake.getHeadSequence();
+            decimator.update(snake);
+            if (started) {
+                assertTrue("frame " + frame + " looked at " + (decimator.getStepsVisited() - visited) + " steps",
+                        decimator.getStepsVisited() - visited <= headSeq - lastHeadSeq + 1);
+            }
+            lastHeadSeq = headSeq;
+
+            if (frame % 10 == 0) {
+                BodyDecimator scratch = new BodyDecimator(TOLERANCE);
+                scratch.update(snake);
+                checkLines(snake, decimator);
+                checkLines(snake, scratch);
+                maxExtra = Math.max(maxExtra, decimator.getPointCount() - scratch.getPointCount());
+            }
+        }
+        assertEquals(1, decimator.getRebuildCount());
+        assertTrue("up to " + maxExtra + " more points than from scratch", maxExtra <= 3);
+    }
+
+    @Test
+    public void longStraightSnakeIsCheapToUpdate() {
+        Snake snake = new Snake(new PointF(100, 5000), DENSITY, 10);
+        snake.increaseLength(3000);
+        BodyDecimator decimator = new BodyDecimator(TOLERANCE);
+        for (int frame = 0; frame < 5000; frame++) {
+            snake.move(0.001 * Math.sin(frame * 0.01), 2);
+            final long visited = decimator.getStepsVisited();
+            decimator.update(snake);
+            if (frame > 0) { assertTrue("frame " + frame, decimator.getStepsVisited() - visited <= 2); }
+        }
+        checkLines(snake, decimator);
+        assertTrue(decimator.getPointCount() + " points", decimator.getPointCount() <= 4);
+    }
+
+    /**
+     * Checks that the lines of a decimator are close to every step of a
+     * snake, start near its tail, and end at its head.
+     * @param snake the snake
+     * @param decimator the decimator, up to date with the snake
+     */
+    private static void checkLines(Snake snake, BodyDecimator decimator) {
+        List<PointF> body = snake.getBody();
+        final int n = decimator.getPointCount();
+        PointF head = body.get(0), tail = body.get(body.size() - 1);
+        assertEquals(head.x, decimator.getX(n - 1), 0);
+        assertEquals(head.y, decimator.getY(n - 1), 0);
+        assertTrue("start is far from the tail",
+                Math.hypot(tail.x - decimator.getX(0), tail.y - decimator.getY(0)) <= 1.5 * TOLERANCE);
+        for (int i = 0; i < body.size(); i++) {
+            PointF pt = body.get(i);
+            float best = Util.distanceToSegmentSquared(pt.x, pt.y, decimator.getX(0), decimator.getY(0),
+                    decimator.getX(0), decimator.getY(0));
+            for (int k = 0; k + 1 < n; k++) {
+                best = Math.min(best, Util.distanceToSegmentSquared(pt.x, pt.y, decimator.getX(k), decimator.getY(k),
+                        decimator.getX(k + 1), decimator.getY(k + 1)));
+            }
+            assertTrue("step " + i + " is " + Math.sqrt(best) + " px from the lines",
+                    Math.sqrt(best) <= TOLERANCE + ROUNDING);
+        }
+    }
+}
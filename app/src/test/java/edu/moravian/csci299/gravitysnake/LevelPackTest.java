@@ -0,0 +1,179 @@
+package edu.moravian.csci299.gravitysnake;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Builds the level pack in the assets with LevelPackWriter and checks that
+ * the asset is exactly what it builds, so the pack can be reviewed and
+ * changed here. To change the levels, edit makeLevels() and write the asset
+ * again with:
+ * ./gradlew testDebugUnitTest --tests '*LevelPackTest' -Dlevels.write=true
+ *
+ * Also checks that damaged packs are turned down with an
+ * IllegalArgumentException instead of failing some other way, including
+ * packs whose scripted walls aren't sorted by frame.
+ */
+public class LevelPackTest {
+    /** The level pack in the assets, from the app folder where the tests run */
+    private final static File ASSET = new File("src/main/assets", LevelPack.ASSET_NAME);
+
+    /**
+     * Makes the levels of the pack in the assets.
+     * @return the writer with all of the levels added
+     */
+    static LevelPackWriter makeLevels() {
+        LevelPackWriter writer = new LevelPackWriter();
+
+        // Walled Garden: a ring of walls around the edge
+        writer.addLevel("Walled Garden", 2, 0.2f, 40, 2, 0.005f, 3600, 2, 1);
+        for (float t = 0.03f; t <= 0.97f; t += 0.04f) {
+            writer.addWall(t, 0.03f).addWall(t, 0.97f).addWall(0.03f, t).addWall(0.97f, t);
+        }
+
+        // Crossroads: a cross with a gap in the middle
+        writer.addLevel("Crossroads", 2.5f, 0.25f, 60, 3, 0.004f, 3600, 2, 1);
+        for (float t = 0.1f; t <= 0.9f; t += 0.035f) {
+            if (Math.abs(t - 0.5f) < 0.2f) { continue; }
+            writer.addWall(t, 0.5f).addWall(0.5f, t);
+        }
+
+        // Rising Tide: rows of walls appear from the top, each lasting 10 seconds
+        writer.addLevel("Rising Tide", 2.5f, 0.2f, 40, 2, 0, 0, 1, 1);
+        for (int row = 0; row < 40; row++) {
+            for (int col = 0; col < 8; col++) {
+                writer.addScriptedWall(300 + row * 120, 0.06f + col * 0.125f + (row % 2) * 0.06f,
+                        0.05f + (row % 10) * 0.09f, 600);
+            }
+        }
+
+        // The Labyrinth: a large world of wall rows, each with two gaps
+        writer.addLevel("The Labyrinth", 2, 0.1f, 40, 2, 0.002f, 3600, 6, 3);
+        Random random = new Random(7);
+        for (int row = 1; row < 12; row++) {
+            if (row == 6) { continue; }
+            float y = row / 12f;
+            int gap = random.nextInt(8);
+            for (float x = 0.01f; x < 0.99f; x += 0.01f) {
+                int section = (int) (x * 8);
+                if (section != gap && section != (gap + 3) % 8) { writer.addWall(x, y); }
+            }
+        }
+
+        return writer;
+    }
+
+    @Test
+    public void assetIsTheLevels() throws IOException {
+        byte[] pack = makeLevels().toBytes();
+        if (Boolean.getBoolean("levels.write")) { Files.write(ASSET.toPath(), pack); }
+        assertArrayEquals(pack, Files.readAllBytes(ASSET.toPath()));
+
+        LevelPack levels = new LevelPack(ByteBuffer.wrap(pack));
+        assertEquals(4, levels.getLevelCount());
+        assertEquals("Walled Garden", levels.getLevel(0).getName());
+        assertEquals("The Labyrinth", levels.getLevel(3).getName());
+        assertEquals(96, levels.getLevel(0).getWallCount());
+        assertEquals(320, levels.getLevel(2).getScriptedWallCount());
+        assertEquals(3, levels.getLevel(3).getWorldScale(), 0);
+    }
+
+    @Test
+    public void readsBackWhatWasWritten() {
+        // Numbers past 2^24 that a float can't hold exactly
+        LevelPack.Level level = new LevelPack(ByteBuffer.wrap(new LevelPackWriter()
+                .addLevel("\u00dcn\u00efcode", 3, 0.5f, 30, 4, 0.01f, (1 << 24) + 1, 5, 2)
+                .addWall(0.25f, 0.5f).addWall(0.75f, 0.5f)
+                .addScriptedWall(120, 0.1f, 0.2f, 60).addScriptedWall(60, 0.3f, 0.4f, 0)
+                .addScriptedWall(90, 0.5f, 0.6f, Integer.MAX_VALUE).addScriptedWall(60, 0.7f, 0.8f, 0)
+                .toBytes())).getLevel(0);
+
+        assertEquals("\u00dcn\u00efcode", level.getName());
+        assertEquals(3, level.getInitialSpeed(), 0);
+        assertEquals(0.5f, level.getSpeedIncreasePerFood(), 0);
+        assertEquals(30, level.getStartingLength());
+        assertEquals(4, level.getLengthIncreasePerFood());
+        assertEquals(0.01f, level.getWallPlacementProbability(), 0);
+        assertEquals((1 << 24) + 1, level.getWallLifetime());
+        assertEquals(5, level.getFoodCount());
+        assertEquals(2, level.getWorldScale(), 0);
+        assertEquals(2, level.getWallCount());
+        assertEquals(0.75f, level.getWallX(1), 0);
+        assertEquals(0.5f, level.getWallY(1), 0);
+
+        // The script is sorted by frame, walls on the same frame stay in order
+        assertEquals(4, level.getScriptedWallCount());
+        assertEquals(60, level.getScriptedWallFrame(0));
+        assertEquals(0.3f, level.getScriptedWallX(0), 0);
+        assertEquals(0.7f, level.getScriptedWallX(1), 0);
+        assertEquals(Integer.MAX_VALUE, level.getScriptedWallLifetime(2));
+        assertEquals(120, level.getScriptedWallFrame(3));
+        assertEquals(60, level.getScriptedWallLifetime(3));
+        assertEquals(2, level.findScriptedWallAfter(60));
+        assertEquals(4, level.findScriptedWallAfter(120));
+    }
+
+    @Test
+    public void damagedPacksAreTurnedDown() {
+        final byte[] good = new LevelPackWriter()
+                .addLevel("Level", 2, 0, 25, 8, 0, 0, 1, 1).addWall(0.5f, 0.5f)
+                .addScriptedWall(10, 0.5f, 0.25f, 0).addScriptedWall(20, 0.25f, 0.5f, 0)
+                .toBytes();
+        final int level = 3 * 4 + 8; // where the only level starts
+        final int script = level + 10 * 4 + 2 * 4; // where the scripted walls start
+        final int nameLength = good.length - 2 - "Level".length();
+
+        checkDamaged(good, 0, 0); // not a pack
+        checkDamaged(good, 8, -1); // negative level count
+        checkDamaged(good, 8, 1000); // more levels than fit
+        checkDamaged(good, 12, good.length); // level starts past the end
+        checkDamaged(good, 16, good.length); // level ends past the end
+        checkDamaged(good, level + 32, -1); // negative wall count
+        checkDamaged(good, level + 32, 1 << 28); // too many walls
+        checkDamaged(good, level + 36, -5); // negative scripted wall count
+        checkDamaged(good, nameLength, 0xFFFF0000); // negative name length (and the start of the name)
+        checkDamaged(good, nameLength, 0x7FFF0000); // name too long
+        checkDamaged(good, script + 4 * 4, 5); // scripted walls out of order
+
+        // A pack cut short anywhere is turned down
+        for (int length = 0; length < good.length; length++) {
+            byte[] cut = new byte[length];
+            System.arraycopy(good, 0, cut, 0, length);
+            try {
+                LevelPack pack = new LevelPack(ByteBuffer.wrap(cut));
+                pack.getLevel(0).getName();
+                fail("cut to " + length + " bytes");
+            } catch (IllegalArgumentException expected) {
+                // turned down
+            }
+        }
+    }
+
+    /**
+     * Damages one int of a pack and checks that opening it and reading its
+     * first level fails with an IllegalArgumentException.
+     * @param good the pack
+     * @param at where the int to change is
+     * @param value the new value
+     */
+    private static void checkDamaged(byte[] good, int at, int value) {
+        ByteBuffer data = ByteBuffer.wrap(good.clone());
+        data.putInt(at, value);
+        try {
+            LevelPack pack = new LevelPack(data);
+            pack.getLevel(0).getName();
+            fail("damaged at " + at);
+        } catch (IllegalArgumentException expected) {
+            // turned down
+        }
+    }
+}
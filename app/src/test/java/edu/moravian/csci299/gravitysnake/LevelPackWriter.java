@@ -0,0 +1,155 @@
+package edu.moravian.csci299.gravitysnake;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Makes level packs, for building the pack in the assets (see LevelPackTest)
+ * and packs for the tests. Each level is started with addLevel() and then the
+ * walls are added to the last level started.
+ */
+class LevelPackWriter {
+    /** A level being written */
+    private static class Level {
+        /** The name of the level */
+        final byte[] name;
+
+        /** The settings of the level, already in the format of the pack */
+        final ByteBuffer settings = ByteBuffer.allocate(8 * 4);
+
+        /** The x and y of each wall */
+        final List<float[]> walls = new ArrayList<>();
+
+        /** The scripted walls, kept sorted by frame */
+        final List<ScriptedWall> script = new ArrayList<>();
+
+        /** @param name the name of the level */
+        Level(String name) { this.name = name.getBytes(StandardCharsets.UTF_8); }
+    }
+
+    /** A wall that appears at a set frame */
+    private static class ScriptedWall {
+        /** The frame the wall appears and the number of frames it lasts */
+        final int frame, lifetime;
+
+        /** The location of the wall, as fractions of the size of the world */
+        final float x, y;
+
+        /**
+         * @param frame the frame the wall appears
+         * @param x the x coordinate, as a fraction of the world width
+         * @param y the y coordinate, as a fraction of the world height
+         * @param lifetime the number of frames the wall lasts, or 0 for forever
+         */
+        ScriptedWall(int frame, float x, float y, int lifetime) {
+            this.frame = frame;
+            this.x = x;
+            this.y = y;
+            this.lifetime = lifetime;
+        }
+    }
+
+    /** The levels written so far */
+    private final List<Level> levels = new ArrayList<>();
+
+    /**
+     * Starts a new level, the walls added after this go in it.
+     * @param name the name of the level
+     * @param initialSpeed the initial speed of the snake, in dp/frame
+     * @param speedIncreasePerFood the speed increase per food, in dp/frame
+     * @param startingLength the starting length of the snake
+     * @param lengthIncreasePerFood the length increase per food
+     * @param wallPlacementProbability the probability of placing a random wall each frame
+     * @param wallLifetime the number of frames random walls last, or 0 for forever
+     * @param foodCount the number of foods in the game at once
+     * @param worldScale how many times larger than the screen the world is
+     * @return this writer
+     */
+    LevelPackWriter addLevel(String name, float initialSpeed, float speedIncreasePerFood, int startingLength,
+                             int lengthIncreasePerFood, float wallPlacementProbability, int wallLifetime,
+                             int foodCount, float worldScale) {
+        Level level = new Level(name);
+        level.settings.putFloat(initialSpeed).putFloat(speedIncreasePerFood);
+        level.settings.putInt(startingLength).putInt(lengthIncreasePerFood);
+        level.settings.putFloat(wallPlacementProbability).putInt(wallLifetime);
+        level.settings.putInt(foodCount).putFloat(worldScale);
+        levels.add(level);
+        return this;
+    }
+
+    /**
+     * Adds a wall placed when the game starts to the last level started.
+     * @param x the x coordinate, as a fraction of the world width
+     * @param y the y coordinate, as a fraction of the world height
+     * @return this writer
+     */
+    LevelPackWriter addWall(float x, float y) {
+        lastLevel().walls.add(new float[] { x, y });
+        return this;
+    }
+
+    /**
+     * Adds a scripted wall to the last level started. They can be added in
+     * any order, walls with the same frame stay in the order they were added.
+     * @param frame the frame the wall appears
+     * @param x the x coordinate, as a fraction of the world width
+     * @param y the y coordinate, as a fraction of the world height
+     * @param lifetime the number of frames the wall lasts, or 0 for forever
+     * @return this writer
+     */
+    LevelPackWriter addScriptedWall(int frame, float x, float y, int lifetime) {
+        List<ScriptedWall> script = lastLevel().script;
+        int at = script.size();
+        while (at > 0 && script.get(at - 1).frame > frame) { at--; }
+        script.add(at, new ScriptedWall(frame, x, y, lifetime));
+        return this;
+    }
+
+    /**
+     * @return the level pack
+     */
+    byte[] toBytes() {
+        List<byte[]> levelBytes = new ArrayList<>();
+        for (Level level : levels) { levelBytes.add(toBytes(level)); }
+
+        int size = LevelPack.HEADER_SIZE + 8 * levels.size();
+        for (byte[] level : levelBytes) { size += level.length; }
+        ByteBuffer out = ByteBuffer.allocate(size);
+        out.putInt(LevelPack.MAGIC).putInt(LevelPack.VERSION).putInt(levels.size());
+        int offset = LevelPack.HEADER_SIZE + 8 * levels.size();
+        for (byte[] level : levelBytes) {
+            out.putInt(offset).putInt(level.length);
+            offset += level.length;
+        }
+        for (byte[] level : levelBytes) { out.put(level); }
+        return out.array();
+    }
+
+    /**
+     * @param level a level
+     * @return the level in the format of the pack
+     */
+    private static byte[] toBytes(Level level) {
+        ByteBuffer out = ByteBuffer.allocate(LevelPack.LEVEL_HEADER_SIZE + LevelPack.WALL_SIZE * level.walls.size() +
+                LevelPack.SCRIPTED_WALL_SIZE * level.script.size() + 2 + level.name.length);
+        out.put(level.settings.array());
+        out.putInt(level.walls.size()).putInt(level.script.size());
+        for (float[] wall : level.walls) { out.putFloat(wall[0]).putFloat(wall[1]); }
+        for (ScriptedWall wall : level.script) {
+            out.putInt(wall.frame).putFloat(wall.x).putFloat(wall.y).putInt(wall.lifetime);
+        }
+        out.putShort((short) level.name.length).put(level.name);
+        return out.array();
+    }
+
+    /**
+     * @return the last level started
+     * @throws IllegalStateException if no level has been started
+     */
+    private Level lastLevel() {
+        if (levels.isEmpty()) { throw new IllegalStateException("no level started"); }
+        return levels.get(levels.size() - 1);
+    }
+}
@@ -0,0 +1,156 @@
+package edu.moravian.csci299.gravitysnake;
+
+import android.graphics.PointF;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Moves a Snake and a PolylineSnake the same way and checks that they play
+ * the same: the heads are in the same place, they are the same length, every
+ * step of the Snake is within the merge tolerance of the polyline, and they
+ * hit themselves and go out of bounds on the same frames (a frame off at
+ * most for hitting themselves, since the merged tail is a little short).
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class PolylineSnakeTest {
+    /** The factor to convert dp to px (a common phone) */
+    private final static float DENSITY = 2.75f;
+
+    /** How far rounding may take a step past the tolerance, in px */
+    private final static float ROUNDING = 1e-2f;
+
+    @Test
+    public void sameMovesSameBody() {
+        Snake snake = new Snake(new PointF(5000, 5000), DENSITY, 10);
+        PolylineSnake polyline = new PolylineSnake(new PointF(5000, 5000), DENSITY, 10);
+        Random random = new Random(1);
+        double direction = 0;
+        for (int frame = 0; frame < 5000; frame++) {
+            // Curves, straight parts, and wiggles, moving different distances each frame
+            int part = frame / 250 % 4;
+            direction += part == 0 ? 0.02 : part == 1 ? 0 : part == 2 ? -0.04 : 0.3 * (random.nextDouble() - 0.5);
+            double distance = 2 + 8 * random.nextDouble();
+            snake.move(direction, distance);
+            polyline.move(direction, distance);
+            if (frame % 100 == 0) {
+                snake.increaseLength(50);
+                polyline.increaseLength(50);
+            }
+
+            assertEquals("frame " + frame, snake.getLastMoveSteps(), polyline.getLastMoveSteps());
+            checkSame(snake, polyline, "frame " + frame);
+            if (frame % 10 == 0) { checkBody(snake, polyline, "frame " + frame); }
+        }
+        assertTrue(polyline.getVertexCount() < snake.getPieceCount());
+    }
+
+    @Test
+    public void hitsItselfOnTheSameFrame() {
+        // Circles of different sizes, so the head runs back onto the body
+        for (double turn : new double[] { 0.05, 0.1, 0.15, 0.2 }) {
+            checkFirstHit(new Snake(new PointF(5000, 5000), DENSITY, 300),
+                    new PolylineSnake(new PointF(5000, 5000), DENSITY, 300), frame -> frame * turn, 10, "turn " + turn);
+        }
+        // A square, crossing the start of the body at a right angle
+        checkFirstHit(new Snake(new PointF(5000, 5000), DENSITY, 400),
+                new PolylineSnake(new PointF(5000, 5000), DENSITY, 400), frame -> frame / 40 * Math.PI / 2, 12, "square");
+    }
+
+    @Test
+    public void goesOutOfBoundsOnTheSameFrame() {
+        final int width = 1080, height = 2000;
+        double[] directions = { 0, Math.PI / 2, Math.PI, -Math.PI / 2, 0.3, 2.5 };
+        for (double direction : directions) {
+            Snake snake = new Snake(new PointF(width / 2f, height / 2f), DENSITY, 100);
+            PolylineSnake polyline = new PolylineSnake(new PointF(width / 2f, height / 2f), DENSITY, 100);
+            for (int frame = 0; ; frame++) {
+                snake.move(direction, 7);
+                polyline.move(direction, 7);
+                boolean out = snake.headIsOutOfBounds(width, height);
+                assertEquals("direction " + direction + " frame " + frame, out, polyline.headIsOutOfBounds(width, height));
+                if (out) { break; }
+                assertTrue("never went out", frame < 1000);
+            }
+        }
+    }
+
+    /** The direction to move in on each frame */
+    private interface Path { double direction(int frame); }
+
+    /**
+     * Moves both snakes along a path until they hit themselves, checking
+     * that they do within a frame of each other.
+     * @param snake the snake
+     * @param polyline the polyline snake, in the same place
+     * @param path the direction to move in each frame
+     * @param distance the distance to move each frame, in px
+     * @param where for the messages
+     */
+    private static void checkFirstHit(Snake snake, PolylineSnake polyline, Path path, double distance, String where) {
+        int snakeHit = -1, polylineHit = -1;
+        for (int frame = 0; snakeHit < 0 || polylineHit < 0; frame++) {
+            assertTrue(where + " never hit itself", frame < 2000);
+            double direction = path.direction(frame);
+            if (snakeHit < 0) { snake.move(direction, distance); }
+            if (polylineHit < 0) { polyline.move(direction, distance); }
+            if (snakeHit < 0 && polylineHit < 0) { checkSame(snake, polyline, where + " frame " + frame); }
+            if (snakeHit < 0 && snake.headPathIntersectsSelf()) { snakeHit = frame; }
+            if (polylineHit < 0 && polyline.headPathIntersectsSelf()) { polylineHit = frame; }
+        }
+        assertTrue(where + " hit on frames " + snakeHit + " and " + polylineHit, Math.abs(snakeHit - polylineHit) <= 1);
+        assertTrue(where + " hit too soon", snakeHit > 20);
+    }
+
+    /**
+     * Checks that the heads and lengths of the snakes are the same.
+     * @param snake the snake
+     * @param polyline the polyline snake
+     * @param where for the messages
+     */
+    private static void checkSame(Snake snake, PolylineSnake polyline, String where) {
+        assertEquals(where, snake.getHead().x, polyline.getHead().x, ROUNDING);
+        assertEquals(where, snake.getHead().y, polyline.getHead().y, ROUNDING);
+        assertEquals(where, snake.getLength(), polyline.getLength());
+        assertEquals(where, snake.getPieceCount(), polyline.getPieceCount());
+        assertFalse(where, snake.headIsOutOfBounds(10000, 10000) || polyline.headIsOutOfBounds(10000, 10000));
+    }
+
+    /**
+     * Checks that every step of the snake is within the merge tolerance of
+     * the polyline, except the last one which may be up to a step past the
+     * trimmed tail.
+     * @param snake the snake
+     * @param polyline the polyline snake
+     * @param where for the messages
+     */
+    private static void checkBody(Snake snake, PolylineSnake polyline, String where) {
+        final float tolerance = PolylineSnake.MERGE_TOLERANCE_DP * DENSITY;
+        List<PointF> body = snake.getBody();
+        final int n = polyline.getVertexCount();
+        PointF a = new PointF(), b = new PointF();
+        for (int i = 0; i < body.size(); i++) {
+            PointF pt = body.get(i);
+            polyline.getVertex(0, a);
+            float best = Util.distanceToSegmentSquared(pt.x, pt.y, a.x, a.y, a.x, a.y);
+            for (int k = 0; k + 1 < n; k++) {
+                polyline.getVertex(k, a);
+                polyline.getVertex(k + 1, b);
+                best = Math.min(best, Util.distanceToSegmentSquared(pt.x, pt.y, a.x, a.y, b.x, b.y));
+            }
+            final float allowed = i == body.size() - 1 ? Snake.STEP_DISTANCE_DP * DENSITY + tolerance : tolerance;
+            assertTrue(where + " step " + i + " is " + Math.sqrt(best) + " px from the polyline",
+                    Math.sqrt(best) <= allowed + ROUNDING);
+        }
+    }
+}
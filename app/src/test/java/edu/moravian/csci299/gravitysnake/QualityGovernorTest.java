@@ -0,0 +1,126 @@
+package edu.moravian.csci299.gravitysnake;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks when QualityGovernor changes the quality level by feeding it made up
+ * frame times: frames are averaged over windows of 30, a slow window (over
+ * 0.8 of the budget) steps down right away, it takes 4 fast windows in a row
+ * (under 0.4 of the budget) to step back up, and the level stays from 0 to 4.
+ */
+public class QualityGovernorTest {
+    /** The time each frame may take, in ns */
+    private final static long BUDGET = 16_000_000;
+
+    /** The number of frames in a window */
+    private final static int WINDOW = 30;
+
+    @Test
+    public void staysAtFullQualityWhileFast() {
+        QualityGovernor governor = new QualityGovernor(BUDGET);
+        feedWindows(governor, 10, BUDGET / 10);
+        assertEquals(QualityGovernor.LEVEL_FULL, governor.getLevel());
+    }
+
+    @Test
+    public void onlyChangesAtTheEndOfAWindow() {
+        QualityGovernor governor = new QualityGovernor(BUDGET);
+        for (int i = 0; i < WINDOW - 1; i++) {
+            assertEquals("frame " + i, QualityGovernor.LEVEL_FULL, governor.recordFrame(2 * BUDGET));
+        }
+        assertEquals(1, governor.recordFrame(2 * BUDGET));
+    }
+
+    @Test
+    public void usesTheAverageOfTheWindow() {
+        QualityGovernor governor = new QualityGovernor(BUDGET);
+        // A few very slow frames in a fast window are fine
+        for (int i = 0; i < WINDOW; i++) { governor.recordFrame(i < 5 ? 2 * BUDGET : BUDGET / 10); }
+        assertEquals(QualityGovernor.LEVEL_FULL, governor.getLevel());
+
+        // Exactly 0.8 of the budget is not too slow, just over is
+        feedWindows(governor, 1, BUDGET * 8 / 10);
+        assertEquals(QualityGovernor.LEVEL_FULL, governor.getLevel());
+        feedWindows(governor, 1, BUDGET * 8 / 10 + 1000);
+        assertEquals(1, governor.getLevel());
+    }
+
+    @Test
+    public void stepsUpOnlyAfterFourFastWindows() {
+        QualityGovernor governor = new QualityGovernor(BUDGET);
+        feedWindows(governor, 2, 2 * BUDGET);
+        assertEquals(2, governor.getLevel());
+
+        feedWindows(governor, 3, BUDGET / 10);
+        assertEquals(2, governor.getLevel());
+        feedWindows(governor, 1, BUDGET / 10);
+        assertEquals(1, governor.getLevel());
+
+        // The count starts over after stepping up
+        feedWindows(governor, 3, BUDGET / 10);
+        assertEquals(1, governor.getLevel());
+        feedWindows(governor, 1, BUDGET / 10);
+        assertEquals(QualityGovernor.LEVEL_FULL, governor.getLevel());
+    }
+
+    @Test
+    public void inBetweenWindowStartsTheFastCountOver() {
+        QualityGovernor governor = new QualityGovernor(BUDGET);
+        feedWindows(governor, 1, 2 * BUDGET);
+        feedWindows(governor, 3, BUDGET / 10);
+        feedWindows(governor, 1, BUDGET / 2); // between 0.4 and 0.8, neither slow nor fast
+        feedWindows(governor, 3, BUDGET / 10);
+        assertEquals(1, governor.getLevel());
+        feedWindows(governor, 1, BUDGET / 10);
+        assertEquals(QualityGovernor.LEVEL_FULL, governor.getLevel());
+    }
+
+    @Test
+    public void slowWindowStartsTheFastCountOver() {
+        QualityGovernor governor = new QualityGovernor(BUDGET);
+        feedWindows(governor, 1, 2 * BUDGET);
+        feedWindows(governor, 3, BUDGET / 10);
+        feedWindows(governor, 1, 2 * BUDGET);
+        assertEquals(2, governor.getLevel());
+        feedWindows(governor, 3, BUDGET / 10);
+        assertEquals(2, governor.getLevel());
+    }
+
+    @Test
+    public void levelStaysInRange() {
+        QualityGovernor governor = new QualityGovernor(BUDGET);
+        feedWindows(governor, 20, 10 * BUDGET);
+        assertEquals(QualityGovernor.MAX_LEVEL, governor.getLevel());
+        assertEquals(4, QualityGovernor.MAX_LEVEL);
+
+        feedWindows(governor, 100, 0);
+        assertEquals(QualityGovernor.LEVEL_FULL, governor.getLevel());
+    }
+
+    @Test
+    public void newBudgetStartsMeasuringOver() {
+        QualityGovernor governor = new QualityGovernor(BUDGET);
+        // Half a window that would be slow with the new budget, then a full
+        // window that is fast with it
+        for (int i = 0; i < WINDOW / 2; i++) { governor.recordFrame(BUDGET); }
+        governor.setFrameBudgetNanos(BUDGET / 2);
+        assertEquals(BUDGET / 2, governor.getFrameBudgetNanos());
+        feedWindows(governor, 1, BUDGET / 10);
+        assertEquals(QualityGovernor.LEVEL_FULL, governor.getLevel());
+
+        feedWindows(governor, 1, BUDGET / 2);
+        assertEquals(1, governor.getLevel());
+    }
+
+    /**
+     * Records whole windows of frames that all take the same time.
+     * @param governor the governor
+     * @param windows the number of windows
+     * @param frameNanos the time of each frame, in ns
+     */
+    private static void feedWindows(QualityGovernor governor, int windows, long frameNanos) {
+        for (int i = 0; i < windows * WINDOW; i++) { governor.recordFrame(frameNanos); }
+    }
+}
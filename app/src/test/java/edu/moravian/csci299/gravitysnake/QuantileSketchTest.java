@@ -0,0 +1,211 @@
+package edu.moravian.csci299.gravitysnake;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Checks the percentiles QuantileSketch estimates against the exact ones of
+ * sorted random data (they must be within RELATIVE_ACCURACY), which bucket
+ * values are counted in, values below 1, and that a saved sketch (alone or
+ * in LevelStats) loads back exactly while damaged ones are turned down with
+ * an IllegalArgumentException.
+ */
+public class QuantileSketchTest {
+    /** The percentiles checked */
+    private final static double[] QUANTILES = { 0, 0.01, 0.1, 0.25, 0.5, 0.75, 0.9, 0.95, 0.99, 0.999, 1 };
+
+    @Test
+    public void quantilesAreWithinTheAccuracy() {
+        Random random = new Random(1);
+        for (int t = 0; t < 20; t++) {
+            // Uniform, exponential, and long tailed data over different ranges
+            final int n = 1 + random.nextInt(20000);
+            final double scale = Math.pow(10, random.nextInt(7));
+            double[] values = new double[n];
+            QuantileSketch sketch = new QuantileSketch();
+            for (int i = 0; i < n; i++) {
+                double u = random.nextDouble();
+                values[i] = 1 + scale * (t % 3 == 0 ? u : t % 3 == 1 ? -Math.log(1 - u) : 1 / (1 - 0.999 * u) - 1);
+                sketch.add(values[i]);
+            }
+            Arrays.sort(values);
+
+            assertEquals(n, sketch.getCount());
+            assertEquals(values[0], sketch.getMin(), 0);
+            assertEquals(values[n - 1], sketch.getMax(), 0);
+            double sum = 0;
+            for (double value : values) { sum += value; }
+            assertEquals(sum / n, sketch.getMean(), 1e-9 * sum / n);
+            for (double q : QUANTILES) {
+                double exact = values[(int) (q * (n - 1))];
+                assertEquals("run " + t + " quantile " + q, exact, sketch.getQuantile(q),
+                        QuantileSketch.RELATIVE_ACCURACY * exact * (1 + 1e-9));
+            }
+        }
+    }
+
+    @Test
+    public void valuesBelowOneAreZero() {
+        QuantileSketch sketch = new QuantileSketch();
+        for (int i = 0; i < 50; i++) { sketch.add(i / 100.0); }
+        sketch.add(-5);
+        for (int i = 0; i < 49; i++) { sketch.add(1000); }
+
+        assertEquals(100, sketch.getCount());
+        assertEquals(0, sketch.getMin(), 0);
+        assertEquals(0, sketch.getQuantile(0.25), 0);
+        assertEquals(0, sketch.getQuantile(0.51), 0); // ranks 0 to 50 are the values below 1
+        assertEquals(1000, sketch.getQuantile(0.52), QuantileSketch.RELATIVE_ACCURACY * 1000);
+        assertEquals(1000, sketch.getMax(), 0);
+
+        // And they are saved as the zero count
+        QuantileSketch loaded = QuantileSketch.fromBytes(sketch.toBytes());
+        assertEquals(0, loaded.getQuantile(0.51), 0);
+        assertEquals(1000, loaded.getQuantile(0.52), QuantileSketch.RELATIVE_ACCURACY * 1000);
+    }
+
+    @Test
+    public void bucketsSplitAtPowersOfGamma() {
+        final double gamma = (1 + QuantileSketch.RELATIVE_ACCURACY) / (1 - QuantileSketch.RELATIVE_ACCURACY);
+        for (int i = 1; i < 500; i += 7) {
+            double edge = Math.pow(gamma, i);
+            // A bucket holds (gamma^(i-1), gamma^i], so just past an edge is the next bucket
+            double below = middleEstimate(edge * (1 - 1e-9)), above = middleEstimate(edge * (1 + 1e-9));
+            assertEquals("bucket " + i, 2 * edge / (gamma + 1), below, 1e-9 * edge);
+            assertEquals("bucket " + (i + 1), 2 * edge * gamma / (gamma + 1), above, 1e-9 * edge);
+            assertEquals(middleEstimate(edge / gamma * (1 + 1e-9)), below, 0);
+        }
+        // Values past the last bucket are all counted in it
+        assertEquals(middleEstimate(1e12), middleEstimate(1e15), 0);
+        assertTrue(middleEstimate(1e12) > middleEstimate(1e8));
+    }
+
+    @Test
+    public void savedSketchLoadsBackExactly() {
+        Random random = new Random(2);
+        for (int t = 0; t < 50; t++) {
+            QuantileSketch sketch = new QuantileSketch();
+            final int n = t == 0 ? 0 : random.nextInt(5000);
+            for (int i = 0; i < n; i++) { sketch.add(Math.exp(random.nextDouble() * 20) - 1.5); }
+            // Some buckets with counts that need several bytes
+            for (int i = 0; i < t * 1000; i++) { sketch.add(12345); }
+
+            byte[] bytes = sketch.toBytes();
+            assertEquals(sketch.getSavedSize(), bytes.length);
+            QuantileSketch loaded = QuantileSketch.fromBytes(bytes);
+            assertEquals(sketch.getCount(), loaded.getCount());
+            assertEquals(sketch.getMean(), loaded.getMean(), 0);
+            assertEquals(sketch.getMin(), loaded.getMin(), 0);
+            assertEquals(sketch.getMax(), loaded.getMax(), 0);
+            for (double q : QUANTILES) { assertEquals(sketch.getQuantile(q), loaded.getQuantile(q), 0); }
+            assertArrayEquals(bytes, loaded.toBytes());
+        }
+    }
+
+    @Test
+    public void onlyUsedBucketsTakeSpace() {
+        QuantileSketch sketch = new QuantileSketch();
+        final int empty = sketch.getSavedSize();
+        for (int i = 0; i < 100_000; i++) { sketch.add(50); }
+        // The count grows from one byte to three, and the bucket takes one byte for its number and three for its count
+        assertEquals(empty + 2 + 1 + 3, sketch.getSavedSize());
+    }
+
+    @Test
+    public void damagedSketchesAreTurnedDown() {
+        QuantileSketch sketch = new QuantileSketch();
+        for (int i = 0; i < 300; i++) { sketch.add(i * 7.5); }
+        final byte[] good = sketch.toBytes();
+
+        // Cut short anywhere
+        for (int length = 0; length < good.length; length++) {
+            checkDamaged(Arrays.copyOf(good, length), "cut to " + length + " bytes");
+        }
+
+        // A different version
+        byte[] version = good.clone();
+        version[0] = 2;
+        checkDamaged(version, "version");
+
+        // Counts that don't add up: the count is 300, two bytes after the version
+        byte[] count = good.clone();
+        count[1]++;
+        checkDamaged(count, "count");
+
+        // A bucket past the last one: one value in bucket 600 (0xD8 0x04 as a varint)
+        ByteBuffer bucket = ByteBuffer.allocate(1 + 1 + 3 * 8 + 5);
+        bucket.put((byte) 1).put((byte) 1).putDouble(5).putDouble(5).putDouble(5);
+        bucket.put((byte) 0).put((byte) 1).put((byte) 0xD8).put((byte) 0x04).put((byte) 1);
+        checkDamaged(bucket.array(), "bucket");
+
+        // A number that never ends
+        byte[] endless = new byte[20];
+        endless[0] = 1;
+        Arrays.fill(endless, 1, endless.length, (byte) 0xFF);
+        checkDamaged(endless, "endless number");
+
+        // Stats with a damaged sketch are turned down too
+        LevelStats stats = new LevelStats();
+        stats.addGame(10, 30);
+        byte[] saved = stats.toBytes();
+        try {
+            LevelStats.fromBytes(Arrays.copyOf(saved, saved.length - 1));
+            fail("cut stats");
+        } catch (IllegalArgumentException expected) {
+            // turned down
+        }
+    }
+
+    @Test
+    public void levelStatsLoadBackExactly() {
+        LevelStats stats = new LevelStats();
+        Random random = new Random(3);
+        for (int i = 0; i < 500; i++) { stats.addGame(random.nextInt(100), random.nextDouble() * 300); }
+
+        LevelStats loaded = LevelStats.fromBytes(stats.toBytes());
+        assertEquals(500, loaded.getGameCount());
+        for (double q : QUANTILES) {
+            assertEquals(stats.getScores().getQuantile(q), loaded.getScores().getQuantile(q), 0);
+            assertEquals(stats.getTimes().getQuantile(q), loaded.getTimes().getQuantile(q), 0);
+        }
+        assertArrayEquals(stats.toBytes(), loaded.toBytes());
+        assertTrue(loaded.getTimes().getMax() <= 300);
+    }
+
+    /**
+     * Estimates the median of a sketch with a value between two far away
+     * ones, so the estimate is the middle of the value's bucket and not
+     * limited by the min or max.
+     * @param value the value
+     * @return the estimated median
+     */
+    private static double middleEstimate(double value) {
+        QuantileSketch sketch = new QuantileSketch();
+        sketch.add(0.5);
+        sketch.add(value);
+        sketch.add(1e30);
+        return sketch.getQuantile(0.5);
+    }
+
+    /**
+     * Checks that loading a damaged sketch fails with an IllegalArgumentException.
+     * @param bytes the damaged sketch
+     * @param what what was damaged
+     */
+    private static void checkDamaged(byte[] bytes, String what) {
+        try {
+            QuantileSketch.fromBytes(bytes);
+            fail(what);
+        } catch (IllegalArgumentException expected) {
+            // turned down
+        }
+    }
+}
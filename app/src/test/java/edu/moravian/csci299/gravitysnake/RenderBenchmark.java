@@ -0,0 +1,331 @@
+package edu.moravian.csci299.gravitysnake;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.PointF;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.util.DisplayMetrics;
+
+import androidx.core.content.ContextCompat;
+
+import org.junit.Assume;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * A benchmark for drawing the game, without a device. It runs the real
+ * SnakeGameRenderer (what SnakeGameView.onDraw() uses) against a canvas that
+ * only counts what is drawn, so the numbers are the draw calls, primitives,
+ * and bitmap blits each frame asks for, and the CPU time spent deciding what
+ * to draw. That is enough to compare ways of drawing on a build machine
+ * before trying them on a phone.
+ *
+ * Each scripted game state is drawn at every quality level: a short snake,
+ * a 5000 piece snake in a world twice the size of the screen, and a short
+ * snake with 500 walls on the screen. The snake keeps moving along a loop
+ * between frames (that time is not counted) so the body decimation is
+ * updated like it is in a real game.
+ *
+ * It only runs when asked for, with for example:
+ * ./gradlew testDebugUnitTest --tests '*RenderBenchmark' -Dbench=true
+ *
+ * The settings (as system properties) are bench.frames, bench.warmup,
+ * bench.compact (to use PolylineSnake), and bench.out (the folder for the
+ * reports, build/reports/render by default).
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class RenderBenchmark {
+    /** The size of the screen drawn to, in px, and its density (a common phone) */
+    private final static int SCREEN_WIDTH = 1080, SCREEN_HEIGHT = 2200;
+    private final static float DENSITY = 2.75f;
+
+    /** The space around the loop and between its rows, in px */
+    private final static float MARGIN = 60, ROW_GAP = 60;
+
+    /** The space between walls, in px */
+    private final static float WALL_SPACING = 48;
+
+    /** A game state to draw */
+    private static class Scenario {
+        final String name;
+        final int length, walls;
+        final float worldScale;
+
+        Scenario(String name, int length, int walls, float worldScale) {
+            this.name = name;
+            this.length = length;
+            this.walls = walls;
+            this.worldScale = worldScale;
+        }
+    }
+
+    /** The results of drawing one scenario at one quality level */
+    private static class Result {
+        String scenario;
+        int quality, frames, length, walls, bodyPoints;
+        double drawCalls, primitives, blits, stateCalls;
+        double meanNanos;
+        long p50, p90, p99, max;
+    }
+
+    /**
+     * A canvas that doesn't draw anything but counts what it is asked to
+     * draw. Draw calls are every call that draws, primitives are the shapes
+     * they draw (a drawLines() with 10 lines is 10), and blits are the
+     * bitmaps drawn. Saves, restores, and transforms are counted separately.
+     */
+    private static class CountingCanvas extends Canvas {
+        long drawCalls, primitives, blits, stateCalls;
+        private int saveCount = 1;
+
+        void reset() { drawCalls = primitives = blits = stateCalls = 0; }
+
+        private void shapes(long n) { drawCalls++; primitives += n; }
+
+        private void blit() { drawCalls++; primitives++; blits++; }
+
+        @Override public void drawLine(float startX, float startY, float stopX, float stopY, Paint paint) { shapes(1); }
+        @Override public void drawLines(float[] pts, int offset, int count, Paint paint) { shapes(count / 4); }
+        @Override public void drawLines(float[] pts, Paint paint) { shapes(pts.length / 4); }
+        @Override public void drawPoint(float x, float y, Paint paint) { shapes(1); }
+        @Override public void drawPoints(float[] pts, int offset, int count, Paint paint) { shapes(count / 2); }
+        @Override public void drawPoints(float[] pts, Paint paint) { shapes(pts.length / 2); }
+        @Override public void drawCircle(float cx, float cy, float radius, Paint paint) { shapes(1); }
+        @Override public void drawOval(RectF oval, Paint paint) { shapes(1); }
+        @Override public void drawRect(RectF rect, Paint paint) { shapes(1); }
+        @Override public void drawRect(Rect r, Paint paint) { shapes(1); }
+        @Override public void drawRect(float left, float top, float right, float bottom, Paint paint) { shapes(1); }
+        @Override public void drawRoundRect(RectF rect, float rx, float ry, Paint paint) { shapes(1); }
+        @Override public void drawPath(Path path, Paint paint) { shapes(1); }
+        @Override public void drawText(String text, float x, float y, Paint paint) { shapes(1); }
+        @Override public void drawBitmap(Bitmap bitmap, float left, float top, Paint paint) { blit(); }
+        @Override public void drawBitmap(Bitmap bitmap, Rect src, Rect dst, Paint paint) { blit(); }
+        @Override public void drawBitmap(Bitmap bitmap, Rect src, RectF dst, Paint paint) { blit(); }
+        @Override public void drawBitmap(Bitmap bitmap, Matrix matrix, Paint paint) { blit(); }
+
+        @Override public int save() { stateCalls++; return saveCount++; }
+        @Override public void restore() { stateCalls++; saveCount--; }
+        @Override public void restoreToCount(int count) { stateCalls++; saveCount = count; }
+        @Override public int getSaveCount() { return saveCount; }
+        @Override public void translate(float dx, float dy) { stateCalls++; }
+        @Override public void rotate(float degrees) { stateCalls++; }
+        @Override public void scale(float sx, float sy) { stateCalls++; }
+        @Override public int getWidth() { return SCREEN_WIDTH; }
+        @Override public int getHeight() { return SCREEN_HEIGHT; }
+    }
+
+    /** The corners of the loop the snake follows */
+    private final List<PointF> waypoints = new ArrayList<>();
+
+    /** The corner the snake is heading to */
+    private int target;
+
+    /**
+     * Runs the benchmark, if it was asked for.
+     * @throws IOException if the reports can't be written
+     */
+    @Test
+    public void benchmark() throws IOException {
+        Assume.assumeTrue("render benchmark only runs with -Dbench=true", Boolean.getBoolean("bench"));
+        final int frames = Integer.getInteger("bench.frames", 600);
+        final int warmup = Integer.getInteger("bench.warmup", 300);
+        final boolean compact = Boolean.getBoolean("bench.compact");
+        final File out = new File(System.getProperty("bench.out", "build/reports/render"));
+
+        Context context = RuntimeEnvironment.getApplication();
+        DisplayMetrics metrics = new DisplayMetrics();
+        metrics.widthPixels = SCREEN_WIDTH;
+        metrics.heightPixels = SCREEN_HEIGHT;
+        metrics.density = metrics.scaledDensity = DENSITY;
+        metrics.densityDpi = (int) (DENSITY * DisplayMetrics.DENSITY_DEFAULT);
+
+        Scenario[] scenarios = {
+                new Scenario("short snake", 10, 0, 1),
+                new Scenario("5k snake", 5000, 0, 2),
+                new Scenario("500 walls", 10, 500, 1),
+        };
+        final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        final CountingCanvas canvas = new CountingCanvas();
+        List<Result> results = new ArrayList<>();
+        for (Scenario scenario : scenarios) {
+            SnakeGame game = setUp(scenario, compact);
+            for (int quality = QualityGovernor.LEVEL_FULL; quality <= QualityGovernor.MAX_LEVEL; quality++) {
+                // A new renderer for each level so nothing is carried over from the last one
+                SnakeGameRenderer renderer = new SnakeGameRenderer(metrics,
+                        ContextCompat.getDrawable(context, R.mipmap.snake_head_foreground),
+                        ContextCompat.getDrawable(context, R.drawable.mouse),
+                        ContextCompat.getDrawable(context, R.drawable.grenade));
+                for (int i = 0; i < warmup; i++) {
+                    tick(game);
+                    renderer.draw(canvas, game, quality);
+                }
+
+                canvas.reset();
+                long[] times = new long[frames];
+                for (int i = 0; i < frames; i++) {
+                    tick(game);
+                    long start = threads.getCurrentThreadCpuTime();
+                    renderer.draw(canvas, game, quality);
+                    times[i] = threads.getCurrentThreadCpuTime() - start;
+                }
+
+                Result result = new Result();
+                result.scenario = scenario.name;
+                result.quality = quality;
+                result.frames = frames;
+                result.length = game.getSnake().getPieceCount();
+                result.walls = game.getItems().countOfType(ItemStore.WALL);
+                result.bodyPoints = renderer.getBodyPointCount();
+                result.drawCalls = (double) canvas.drawCalls / frames;
+                result.primitives = (double) canvas.primitives / frames;
+                result.blits = (double) canvas.blits / frames;
+                result.stateCalls = (double) canvas.stateCalls / frames;
+                long total = 0;
+                for (long t : times) { total += t; }
+                result.meanNanos = (double) total / frames;
+                Arrays.sort(times);
+                result.p50 = times[(int) (0.5 * (frames - 1))];
+                result.p90 = times[(int) (0.9 * (frames - 1))];
+                result.p99 = times[(int) (0.99 * (frames - 1))];
+                result.max = times[frames - 1];
+                results.add(result);
+                System.out.printf(Locale.US, "%s, quality %d: %.1f draw calls, %.1f primitives, %.1f blits, p50 %d ns, p99 %d ns%n",
+                        result.scenario, quality, result.drawCalls, result.primitives, result.blits, result.p50, result.p99);
+            }
+        }
+        writeReports(out, compact, results);
+    }
+
+    /**
+     * Starts a game for a scenario and plays it until the snake is as long
+     * as it should be and is following the loop at the top of the world,
+     * then adds the walls below the loop.
+     * @param scenario the scenario
+     * @param compact if the snake should be a PolylineSnake
+     * @return the game
+     */
+    private SnakeGame setUp(Scenario scenario, boolean compact) {
+        final float stepPx = Snake.STEP_DISTANCE_DP * DENSITY;
+        final float width = SCREEN_WIDTH * scenario.worldScale;
+
+        // Enough rows that the loop is half again as long as the snake
+        final float rowWidth = width - 3 * MARGIN;
+        int rows = (int) Math.ceil(1.5 * scenario.length * stepPx / rowWidth) + 2;
+        rows += rows % 2;
+        buildLoop(rows, rowWidth);
+
+        SnakeGame game = new SnakeGame();
+        game.setDpToPxFactor(DENSITY);
+        game.setWorldScale(scenario.worldScale);
+        game.setCompactBody(compact);
+        game.setStartingLength(10);
+        game.setInitialSpeed(Snake.STEP_DISTANCE_DP); // one step per tick
+        game.setSpeedIncreasePerFood(0);
+        game.setLengthIncreasePerFood(0);
+        game.setWallPlacementProbability(0);
+        game.setFoodCount(4);
+        game.startGame(SCREEN_WIDTH, SCREEN_HEIGHT);
+        target = 1;
+
+        // Go once around the loop while still short so the whole body is on
+        // it, then grow while going around it again
+        SnakeBody snake = game.getSnake();
+        while (target != 0) { tick(game); }
+        snake.increaseLength(Math.max(0, scenario.length - snake.getLength()));
+        while (snake.getPieceCount() < scenario.length || target != 0) { tick(game); }
+
+        // Walls in a grid below the loop, as many as fit on the screen
+        final float top = MARGIN + (rows - 1) * ROW_GAP + 2 * MARGIN;
+        final int perRow = (int) ((SCREEN_WIDTH - 2 * MARGIN) / WALL_SPACING);
+        for (int i = 0; i < scenario.walls; i++) {
+            game.addWall(MARGIN + (i % perRow) * WALL_SPACING, top + (i / perRow) * WALL_SPACING, 0);
+        }
+        return game;
+    }
+
+    /**
+     * Steers the snake along the loop and runs one tick of the game.
+     * @param game the game
+     */
+    private void tick(SnakeGame game) {
+        PointF head = game.getSnake().getHead(), to = waypoints.get(target);
+        if (Math.hypot(to.x - head.x, to.y - head.y) < 1.5 * Snake.STEP_DISTANCE_DP * DENSITY) {
+            target = (target + 1) % waypoints.size();
+            to = waypoints.get(target);
+        }
+        game.setMovementDirection(Math.atan2(to.y - head.y, to.x - head.x));
+        game.update();
+        if (game.isGameOver()) { throw new AssertionError("the snake died"); }
+    }
+
+    /**
+     * Makes the loop: rows going back and forth from the top down, then a
+     * lane on the left going back up to the first row.
+     * @param rows the number of rows, even
+     * @param rowWidth the width of each row, in px
+     */
+    private void buildLoop(int rows, float rowWidth) {
+        waypoints.clear();
+        final float left = 2 * MARGIN, right = left + rowWidth, lane = MARGIN;
+        for (int r = 0; r < rows; r++) {
+            float y = MARGIN + r * ROW_GAP;
+            waypoints.add(new PointF(r % 2 == 0 ? left : right, y));
+            waypoints.add(new PointF(r % 2 == 0 ? right : left, y));
+        }
+        waypoints.add(new PointF(lane, MARGIN + (rows - 1) * ROW_GAP));
+        waypoints.add(new PointF(lane, MARGIN));
+    }
+
+    /**
+     * Writes the results as render.csv and render.json.
+     * @param out the folder to write to
+     * @param compact if the snake was a PolylineSnake
+     * @param results the results of each scenario and quality level
+     * @throws IOException if the files can't be written
+     */
+    private static void writeReports(File out, boolean compact, List<Result> results) throws IOException {
+        if (!out.isDirectory() && !out.mkdirs()) { throw new IOException("could not make " + out); }
+        try (PrintWriter csv = new PrintWriter(new FileWriter(new File(out, "render.csv")))) {
+            csv.println("scenario,quality,frames,length,walls,body_points,draw_calls,primitives,blits,state_calls,mean_cpu_ns,p50_cpu_ns,p90_cpu_ns,p99_cpu_ns,max_cpu_ns");
+            for (Result r : results) {
+                csv.printf(Locale.US, "%s,%d,%d,%d,%d,%d,%.1f,%.1f,%.1f,%.1f,%.1f,%d,%d,%d,%d%n", r.scenario, r.quality,
+                        r.frames, r.length, r.walls, r.bodyPoints, r.drawCalls, r.primitives, r.blits, r.stateCalls,
+                        r.meanNanos, r.p50, r.p90, r.p99, r.max);
+            }
+        }
+        try (PrintWriter json = new PrintWriter(new FileWriter(new File(out, "render.json")))) {
+            json.printf("{\"compactBody\": %b, \"screen\": [%d, %d], \"density\": %.2f, \"results\": [%n",
+                    compact, SCREEN_WIDTH, SCREEN_HEIGHT, DENSITY);
+            for (int i = 0; i < results.size(); i++) {
+                Result r = results.get(i);
+                json.printf(Locale.US, "  {\"scenario\": \"%s\", \"quality\": %d, \"frames\": %d, \"length\": %d, " +
+                                "\"walls\": %d, \"bodyPoints\": %d, \"drawCalls\": %.1f, \"primitives\": %.1f, " +
+                                "\"blits\": %.1f, \"stateCalls\": %.1f, \"meanCpuNs\": %.1f, \"p50CpuNs\": %d, " +
+                                "\"p90CpuNs\": %d, \"p99CpuNs\": %d, \"maxCpuNs\": %d}%s%n",
+                        r.scenario, r.quality, r.frames, r.length, r.walls, r.bodyPoints, r.drawCalls, r.primitives,
+                        r.blits, r.stateCalls, r.meanNanos, r.p50, r.p90, r.p99, r.max, i + 1 < results.size() ? "," : "");
+            }
+            json.println("]}");
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package edu.moravian.csci299.gravitysnake;
+
+import android.graphics.PointF;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks that saving and restoring gives something that plays out exactly
+ * the same as the original from then on, for both kinds of snake body and
+ * for a whole game. The original and the restored copy are given the same
+ * moves and their saved bytes are compared after each one.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class SaveRestoreTest {
+    /** The factor to convert dp to px (a common phone) */
+    private final static float DENSITY = 2.75f;
+
+    /** The number of moves before saving and after restoring */
+    private final static int MOVES = 600;
+
+    @Test
+    public void snakeStepsTheSameAfterRestore() {
+        Snake snake = new Snake(new PointF(2000, 2000), DENSITY, 40);
+        checkBody(snake, in -> Snake.readFrom(in, DENSITY));
+    }
+
+    @Test
+    public void polylineSnakeStepsTheSameAfterRestore() {
+        PolylineSnake snake = new PolylineSnake(new PointF(2000, 2000), DENSITY, 40);
+        checkBody(snake, in -> PolylineSnake.readFrom(in, DENSITY));
+    }
+
+    @Test
+    public void gameStepsTheSameAfterRestore() {
+        checkGame(false);
+    }
+
+    @Test
+    public void compactGameStepsTheSameAfterRestore() {
+        checkGame(true);
+    }
+
+    /** Reads a snake body back from its saved bytes */
+    private interface Reader {
+        SnakeBody read(ByteBuffer in);
+    }
+
+    /**
+     * Moves a snake, saves and restores it in the middle of a straight
+     * stretch (so a polyline is in the middle of merging steps), then moves
+     * both the same way and checks they stay the same.
+     * @param snake the snake
+     * @param reader reads the snake back
+     */
+    private static void checkBody(SnakeBody snake, Reader reader) {
+        Random moves = new Random(1);
+        for (int i = 0; i < MOVES; i++) {
+            move(snake, i, moves);
+            if (i % 50 == 0) { snake.increaseLength(10); }
+        }
+        snake.move(0.3, 7); // the last segment is being stretched when it is saved
+        SnakeBody restored = reader.read(ByteBuffer.wrap(save(snake)));
+        assertArrayEquals(save(snake), save(restored));
+
+        Random copy = new Random(2), again = new Random(2);
+        for (int i = 0; i < MOVES; i++) {
+            move(snake, i, copy);
+            move(restored, i, again);
+            if (i % 50 == 0) {
+                snake.increaseLength(10);
+                restored.increaseLength(10);
+            }
+            assertArrayEquals("move " + i, save(snake), save(restored));
+            assertEquals(snake.headPathIntersectsSelf(), restored.headPathIntersectsSelf());
+        }
+    }
+
+    /**
+     * Moves a snake in a slow wiggle with straight parts, at changing speeds.
+     * @param snake the snake
+     * @param i the number of the move
+     * @param moves picks the speeds
+     */
+    private static void move(SnakeBody snake, int i, Random moves) {
+        double direction = (i / 40) % 2 == 0 ? 0.3 : 0.3 + 0.4 * Math.sin(i * 0.1);
+        snake.move(direction, 2 + 8 * moves.nextDouble());
+    }
+
+    /** @return the saved bytes of a snake */
+    private static byte[] save(SnakeBody snake) {
+        ByteBuffer out = ByteBuffer.allocate(snake.getSavedSize());
+        snake.writeTo(out);
+        assertEquals(out.capacity(), out.position());
+        return out.array();
+    }
+
+    /**
+     * Plays a game, saves it and restores it into a new game, then plays
+     * both the same way and checks they stay the same, including the walls
+     * and food placed with the random numbers.
+     * @param compact if the snake is a PolylineSnake
+     */
+    private static void checkGame(boolean compact) {
+        SnakeGame game = new SnakeGame();
+        game.setDpToPxFactor(DENSITY);
+        game.setCompactBody(compact);
+        game.setWorldScale(2);
+        game.setWallPlacementProbability(0.05);
+        game.setWallLifetime(300);
+        game.setFoodCount(20);
+        game.startGame(1080, 2200);
+        for (int i = 0; i < MOVES && !game.isGameOver(); i++) { step(game, i); }
+
+        SnakeGame restored = new SnakeGame();
+        restored.restoreState(game.saveState());
+        assertArrayEquals(game.saveState(), restored.saveState());
+        for (int i = 0; i < MOVES && !game.isGameOver(); i++) {
+            step(game, i);
+            step(restored, i);
+            assertArrayEquals("frame " + i, game.saveState(), restored.saveState());
+        }
+        assertEquals(game.isGameOver(), restored.isGameOver());
+    }
+
+    /**
+     * Steers a game around in a slow circle and updates it.
+     * @param game the game
+     * @param i the number of the frame
+     */
+    private static void step(SnakeGame game, int i) {
+        game.setMovementDirection(i * 0.01);
+        game.update();
+    }
+}
@@ -0,0 +1,159 @@
+package edu.moravian.csci299.gravitysnake;
+
+import android.graphics.PointF;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks SnakeArena: two arenas with the same seed play exactly the same
+ * game (with enough bots that the collisions are checked in parallel), two
+ * snakes meeting head on both die in the same frame, a snake that runs into
+ * the side of another dies while the other lives on, and the body of a dead
+ * snake no longer counts.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class SnakeArenaTest {
+    /** The factor to convert dp to px (a common phone) */
+    private final static float DENSITY = 2.75f;
+
+    @Test
+    public void sameSeedPlaysTheSameGame() {
+        for (int bots : new int[] { 3, 16, 64 }) {
+            SnakeArena a = newArena(42), b = newArena(42);
+            a.startGame(2160, 4400, 0, bots);
+            b.startGame(2160, 4400, 0, bots);
+            for (int frame = 0; frame < 3000; frame++) {
+                boolean going = a.update();
+                assertEquals("frame " + frame, going, b.update());
+                checkSame(a, b, bots + " bots, frame " + frame);
+                if (!going) { break; }
+            }
+            assertTrue("no walls were placed", a.getWallLocations().size() > 0);
+        }
+
+        // And a different seed doesn't
+        SnakeArena a = newArena(1), b = newArena(2);
+        a.startGame(2160, 4400, 0, 16);
+        b.startGame(2160, 4400, 0, 16);
+        for (int frame = 0; frame < 500; frame++) {
+            a.update();
+            b.update();
+        }
+        assertFalse(a.getFoodLocation().x == b.getFoodLocation().x && a.getFoodLocation().y == b.getFoodLocation().y);
+    }
+
+    @Test
+    public void headOnBothDie() {
+        // Snake 0 starts on the right and snake 1 on the left, both at the same height
+        SnakeArena arena = newArena(1);
+        arena.setWallPlacementProbability(0);
+        arena.startGame(1200, 1200, 2, 0);
+        arena.setMovementDirection(0, Math.PI);
+        arena.setMovementDirection(1, 0);
+        int frame = 0;
+        while (arena.update()) {
+            assertEquals(2, arena.getAliveCount());
+            assertTrue("they never met", ++frame < 1000);
+        }
+        assertFalse(arena.isAlive(0));
+        assertFalse(arena.isAlive(1));
+
+        // They met in the middle
+        float range = 2 * Snake.BODY_PIECE_SIZE_DP * DENSITY;
+        assertEquals(600, arena.getSnake(0).getHead().x, range);
+        assertEquals(600, arena.getSnake(1).getHead().x, range);
+    }
+
+    @Test
+    public void runningIntoTheSideOfAnotherSnake() {
+        // Snake 1 goes up from the left, snake 0 goes left into the start of its body
+        SnakeArena arena = newArena(1);
+        arena.setWallPlacementProbability(0);
+        arena.setStartingLength(400);
+        arena.startGame(1200, 2400, 2, 0);
+        final PointF start = new PointF(arena.getSnake(1).getHead().x, arena.getSnake(1).getHead().y);
+        arena.setMovementDirection(0, Math.PI);
+        arena.setMovementDirection(1, -Math.PI / 2);
+        final float range = Snake.BODY_PIECE_SIZE_DP * DENSITY;
+        while (arena.isAlive(0)) {
+            assertTrue(arena.update());
+            assertTrue(arena.isAlive(1));
+            if (arena.isAlive(0)) { assertTrue(arena.getSnake(0).getHead().x > start.x); }
+        }
+        PointF head = arena.getSnake(0).getHead();
+        assertEquals(start.y, head.y, 1e-3);
+        assertTrue("died " + (head.x - start.x) + " px away", head.x - start.x < range + 2.5f * DENSITY);
+        assertTrue(head.x - start.x >= range - 2.5f * DENSITY);
+
+        // Snake 1 can now go right through the dead body, it no longer counts
+        arena.setMovementDirection(1, 0);
+        moveUntil(arena, () -> arena.getSnake(1).getHead().x > 600);
+        arena.setMovementDirection(1, Math.PI / 2);
+        moveUntil(arena, () -> arena.getSnake(1).getHead().y > start.y + 200);
+        assertEquals(1, arena.getAliveCount());
+    }
+
+    /** Something to wait for */
+    private interface Condition { boolean done(); }
+
+    /**
+     * Updates an arena until a condition is met, checking that snake 1 is
+     * still alive after every update.
+     * @param arena the arena
+     * @param condition the condition
+     */
+    private static void moveUntil(SnakeArena arena, Condition condition) {
+        for (int frame = 0; !condition.done(); frame++) {
+            assertTrue("frame " + frame, arena.update() && arena.isAlive(1));
+            assertTrue("took too long", frame < 2000);
+        }
+    }
+
+    /**
+     * @param seed the seed
+     * @return a new arena whose snakes don't grow or speed up
+     */
+    private static SnakeArena newArena(long seed) {
+        SnakeArena arena = new SnakeArena(seed);
+        arena.setDpToPxFactor(DENSITY);
+        arena.setLengthIncreasePerFood(0);
+        arena.setWallPlacementProbability(0.01);
+        return arena;
+    }
+
+    /**
+     * Checks that two arenas are in exactly the same state.
+     * @param a one arena
+     * @param b the other arena
+     * @param where for the messages
+     */
+    private static void checkSame(SnakeArena a, SnakeArena b, String where) {
+        assertEquals(where, a.getAliveCount(), b.getAliveCount());
+        assertEquals(where, a.getFoodLocation().x, b.getFoodLocation().x, 0);
+        assertEquals(where, a.getFoodLocation().y, b.getFoodLocation().y, 0);
+        List<PointF> wallsA = a.getWallLocations(), wallsB = b.getWallLocations();
+        assertEquals(where, wallsA.size(), wallsB.size());
+        for (int i = 0; i < wallsA.size(); i++) {
+            assertEquals(where, wallsA.get(i).x, wallsB.get(i).x, 0);
+            assertEquals(where, wallsA.get(i).y, wallsB.get(i).y, 0);
+        }
+        for (int i = 0; i < a.getSnakeCount(); i++) {
+            assertEquals(where, a.isAlive(i), b.isAlive(i));
+            assertEquals(where, a.getScore(i), b.getScore(i));
+            PointF headA = a.getSnake(i).getHead(), headB = b.getSnake(i).getHead();
+            assertEquals(where, headA.x, headB.x, 0);
+            assertEquals(where, headA.y, headB.y, 0);
+            assertEquals(where, a.getSnake(i).getPieceCount(), b.getSnake(i).getPieceCount());
+        }
+    }
+}
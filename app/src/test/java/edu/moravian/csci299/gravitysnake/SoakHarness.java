@@ -0,0 +1,257 @@
+package edu.moravian.csci299.gravitysnake;
+
+import android.graphics.PointF;
+
+import org.junit.Assume;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * A soak and scaling harness for the game logic. It plays one long game with
+ * the real SnakeGame.update() and touchedSegments() loop, growing the snake and
+ * adding walls in steps up to the limits, and at each step measures the tick
+ * time percentiles, the bytes allocated per tick, the garbage collections,
+ * and the heap size. The results are written as CSV and JSON so the point
+ * where the cost of a tick stops being flat is easy to see.
+ *
+ * The snake is steered along a closed zig-zag loop that is longer than the
+ * longest snake, so it never runs into itself or the edges. The walls are
+ * placed in a strip below the loop, out of the way of the snake, but every
+ * tick still has to check them.
+ *
+ * It only runs when asked for (it takes minutes), with for example:
+ * ./gradlew testDebugUnitTest --tests '*SoakHarness' -Dsoak=true -Dsoak.maxLength=20000
+ *
+ * The settings (as system properties) are soak.maxLength, soak.maxWalls,
+ * soak.steps, soak.ticksPerStep, soak.compact (to use PolylineSnake), and
+ * soak.out (the folder for the reports, build/reports/soak by default).
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class SoakHarness {
+    /** The space between the rows of the loop, in px */
+    private final static float ROW_GAP = 40;
+
+    /** The width of each row of the loop, in px */
+    private final static float ROW_WIDTH = 4000;
+
+    /** The space around the loop, in px */
+    private final static float MARGIN = 60;
+
+    /** The height of the strip of walls below the loop, in px */
+    private final static float WALL_STRIP = 1200;
+
+    /** The space between walls, in px */
+    private final static float WALL_SPACING = 24;
+
+    /** The results of one step */
+    private static class Step {
+        int length, walls, ticks;
+        long p50, p90, p99, p999, max;
+        double meanNanos, allocatedPerTick;
+        long gcCount, gcMillis, heapUsed, heapCommitted;
+    }
+
+    /** The corners of the loop the snake follows */
+    private final List<PointF> waypoints = new ArrayList<>();
+
+    /** The corner the snake is heading to */
+    private int target;
+
+    /**
+     * Runs the soak test, if it was asked for.
+     * @throws IOException if the reports can't be written
+     */
+    @Test
+    public void soak() throws IOException {
+        Assume.assumeTrue("soak harness only runs with -Dsoak=true", Boolean.getBoolean("soak"));
+        final int maxLength = Integer.getInteger("soak.maxLength", 20000);
+        final int maxWalls = Integer.getInteger("soak.maxWalls", 5000);
+        final int steps = Integer.getInteger("soak.steps", 10);
+        final int ticksPerStep = Integer.getInteger("soak.ticksPerStep", 200000);
+        final boolean compact = Boolean.getBoolean("soak.compact");
+        final File out = new File(System.getProperty("soak.out", "build/reports/soak"));
+
+        // Enough rows that the loop is half again as long as the longest snake
+        final float stepPx = Snake.STEP_DISTANCE_DP;
+        int rows = (int) Math.ceil(1.5 * maxLength * stepPx / ROW_WIDTH) + 2;
+        rows += rows % 2;
+        final int width = (int) (ROW_WIDTH + 3 * MARGIN);
+        final int loopHeight = (int) (2 * MARGIN + (rows - 1) * ROW_GAP);
+        final int height = (int) (loopHeight + WALL_STRIP);
+        buildLoop(rows);
+
+        SnakeGame game = new SnakeGame();
+        game.setDpToPxFactor(1);
+        game.setCompactBody(compact);
+        game.setStartingLength(10);
+        game.setInitialSpeed(stepPx); // one step per tick
+        game.setSpeedIncreasePerFood(0);
+        game.setLengthIncreasePerFood(0);
+        game.setWallPlacementProbability(0);
+        game.setFoodCount(4);
+        game.startGame(width, height);
+        target = nearestWaypoint(game.getSnake().getHead());
+
+        final float[] touch = { width - 5, height - 5, width - 5, height - 5 }; // a corner with nothing in it
+        final java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        final long thread = Thread.currentThread().getId();
+        List<Step> results = new ArrayList<>();
+        int wallsPlaced = 0;
+        for (int s = 1; s <= steps; s++) {
+            // Grow the snake and add walls up to this step's size (not measured)
+            SnakeBody snake = game.getSnake();
+            int length = (int) ((long) maxLength * s / steps), walls = (int) ((long) maxWalls * s / steps);
+            snake.increaseLength(Math.max(0, length - snake.getLength()));
+            while (snake.getPieceCount() < length) { tick(game, touch); }
+            for (; wallsPlaced < walls; wallsPlaced++) {
+                int perRow = (int) ((width - 2 * MARGIN) / WALL_SPACING);
+                game.addWall(MARGIN + (wallsPlaced % perRow) * WALL_SPACING,
+                        loopHeight + MARGIN + (wallsPlaced / perRow % (int) ((WALL_STRIP - 2 * MARGIN) / WALL_SPACING)) * WALL_SPACING, 0);
+            }
+
+            // Measure
+            long[] times = new long[ticksPerStep];
+            long gcCount = 0, gcMillis = 0;
+            for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+                gcCount -= gc.getCollectionCount();
+                gcMillis -= gc.getCollectionTime();
+            }
+            long allocated = allocatedBytes(threads, thread);
+            for (int i = 0; i < ticksPerStep; i++) {
+                long start = System.nanoTime();
+                tick(game, touch);
+                times[i] = System.nanoTime() - start;
+            }
+            allocated = allocatedBytes(threads, thread) - allocated;
+            for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+                gcCount += gc.getCollectionCount();
+                gcMillis += gc.getCollectionTime();
+            }
+            if (game.isGameOver()) { throw new AssertionError("the snake died at step " + s); }
+
+            Step step = new Step();
+            step.length = game.getSnake().getLength();
+            step.walls = game.getItems().countOfType(ItemStore.WALL);
+            step.ticks = ticksPerStep;
+            step.allocatedPerTick = allocated < 0 ? -1 : (double) allocated / ticksPerStep;
+            step.gcCount = gcCount;
+            step.gcMillis = gcMillis;
+            MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+            step.heapUsed = heap.getUsed();
+            step.heapCommitted = heap.getCommitted();
+            long total = 0;
+            for (long t : times) { total += t; }
+            step.meanNanos = (double) total / ticksPerStep;
+            Arrays.sort(times);
+            step.p50 = times[(int) (0.5 * (ticksPerStep - 1))];
+            step.p90 = times[(int) (0.9 * (ticksPerStep - 1))];
+            step.p99 = times[(int) (0.99 * (ticksPerStep - 1))];
+            step.p999 = times[(int) (0.999 * (ticksPerStep - 1))];
+            step.max = times[ticksPerStep - 1];
+            results.add(step);
+            System.out.printf(Locale.US, "length %d walls %d: p50 %d ns, p99 %d ns, %.1f B/tick, %d GCs%n",
+                    step.length, step.walls, step.p50, step.p99, step.allocatedPerTick, step.gcCount);
+        }
+        writeReports(out, compact, results);
+    }
+
+    /**
+     * Steers the snake along the loop and runs one tick of the game.
+     * @param game the game
+     * @param touch where to touch the game each tick, as a single touch segment
+     */
+    private void tick(SnakeGame game, float[] touch) {
+        PointF head = game.getSnake().getHead(), to = waypoints.get(target);
+        if (Math.hypot(to.x - head.x, to.y - head.y) < 1.5 * Snake.STEP_DISTANCE_DP) {
+            target = (target + 1) % waypoints.size();
+            to = waypoints.get(target);
+        }
+        game.setMovementDirection(Math.atan2(to.y - head.y, to.x - head.x));
+        game.update();
+        game.touchedSegments(touch, 1);
+    }
+
+    /**
+     * Makes the loop: rows going back and forth from top to bottom, then a
+     * lane on the left going back up to the first row.
+     * @param rows the number of rows, even
+     */
+    private void buildLoop(int rows) {
+        final float left = 2 * MARGIN, right = left + ROW_WIDTH, lane = MARGIN;
+        for (int r = 0; r < rows; r++) {
+            float y = MARGIN + r * ROW_GAP;
+            waypoints.add(new PointF(r % 2 == 0 ? left : right, y));
+            waypoints.add(new PointF(r % 2 == 0 ? right : left, y));
+        }
+        waypoints.add(new PointF(lane, MARGIN + (rows - 1) * ROW_GAP));
+        waypoints.add(new PointF(lane, MARGIN));
+    }
+
+    /**
+     * @param pt a point
+     * @return the index of the start of the row closest to the point
+     */
+    private int nearestWaypoint(PointF pt) {
+        int best = 0;
+        for (int i = 0; i < waypoints.size() - 2; i += 2) {
+            if (Math.abs(waypoints.get(i).y - pt.y) < Math.abs(waypoints.get(best).y - pt.y)) { best = i; }
+        }
+        return best + 1;
+    }
+
+    /**
+     * @return the bytes allocated by a thread so far, or -1 if the JVM can't tell
+     */
+    private static long allocatedBytes(java.lang.management.ThreadMXBean threads, long thread) {
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(thread);
+        }
+        return -1;
+    }
+
+    /**
+     * Writes the results as soak.csv and soak.json.
+     * @param out the folder to write to
+     * @param compact if the snake was a PolylineSnake
+     * @param results the results of each step
+     * @throws IOException if the files can't be written
+     */
+    private static void writeReports(File out, boolean compact, List<Step> results) throws IOException {
+        if (!out.isDirectory() && !out.mkdirs()) { throw new IOException("could not make " + out); }
+        try (PrintWriter csv = new PrintWriter(new FileWriter(new File(out, "soak.csv")))) {
+            csv.println("length,walls,ticks,mean_ns,p50_ns,p90_ns,p99_ns,p999_ns,max_ns,alloc_bytes_per_tick,gc_count,gc_ms,heap_used,heap_committed");
+            for (Step s : results) {
+                csv.printf(Locale.US, "%d,%d,%d,%.1f,%d,%d,%d,%d,%d,%.2f,%d,%d,%d,%d%n", s.length, s.walls, s.ticks,
+                        s.meanNanos, s.p50, s.p90, s.p99, s.p999, s.max, s.allocatedPerTick,
+                        s.gcCount, s.gcMillis, s.heapUsed, s.heapCommitted);
+            }
+        }
+        try (PrintWriter json = new PrintWriter(new FileWriter(new File(out, "soak.json")))) {
+            json.printf("{\"compactBody\": %b, \"steps\": [%n", compact);
+            for (int i = 0; i < results.size(); i++) {
+                Step s = results.get(i);
+                json.printf(Locale.US, "  {\"length\": %d, \"walls\": %d, \"ticks\": %d, \"meanNs\": %.1f, \"p50Ns\": %d, " +
+                                "\"p90Ns\": %d, \"p99Ns\": %d, \"p999Ns\": %d, \"maxNs\": %d, \"allocBytesPerTick\": %.2f, " +
+                                "\"gcCount\": %d, \"gcMs\": %d, \"heapUsed\": %d, \"heapCommitted\": %d}%s%n",
+                        s.length, s.walls, s.ticks, s.meanNanos, s.p50, s.p90, s.p99, s.p999, s.max, s.allocatedPerTick,
+                        s.gcCount, s.gcMillis, s.heapUsed, s.heapCommitted, i + 1 < results.size() ? "," : "");
+            }
+            json.println("]}");
+        }
+    }
+}
@@ -0,0 +1,283 @@
+package edu.moravian.csci299.gravitysnake;
+
+import android.graphics.PointF;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Plays games with a SpectatorStream on localhost and a SpectatorClient
+ * watching it, and checks that what the client rebuilds from the keyframes
+ * and deltas is the same as the game: the frame, score, size of the world,
+ * body points, and items. This is also checked when the client falls so far
+ * behind that frames have to be merged before they can be sent, and when a
+ * new spectator replaces the old one.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class SpectatorStreamTest {
+    /** The factor to convert dp to px (a common phone) */
+    private final static float DENSITY = 2.75f;
+
+    /** The longest to wait for the stream, in ms */
+    private final static long TIMEOUT_MILLIS = 10_000;
+
+    /** How far body points may be from the game, in px */
+    private final static float TOLERANCE = 1e-3f;
+
+    /**
+     * How far body points of a compact body may be from the game, in px. The
+     * stream sends each step exactly, but a PolylineSnake only keeps lines
+     * that are within its merge tolerance of the steps.
+     */
+    private final static float COMPACT_TOLERANCE = PolylineSnake.MERGE_TOLERANCE_DP * DENSITY + TOLERANCE;
+
+    @Test
+    public void keyframeThenDeltas() throws Exception {
+        for (boolean compact : new boolean[] { false, true }) {
+            SpectatorStream stream = new SpectatorStream(0);
+            try (SpectatorClient client = connect(stream)) {
+                SnakeGame game = newGame(stream, compact);
+                final float tolerance = compact ? COMPACT_TOLERANCE : TOLERANCE;
+                Watcher watcher = new Watcher(client);
+                watcher.start();
+
+                for (int i = 0; i < 600; i++) {
+                    step(game, i);
+                    waitForFrame(watcher, game.getFramesPlayed());
+                    checkSame(game, client, tolerance);
+                }
+                assertEquals(1, client.getKeyframeCount());
+                assertEquals(599, client.getDeltaCount());
+
+                // A new game is sent as a keyframe
+                game.startGame(1080, 2200);
+                step(game, 0);
+                waitForFrame(watcher, game.getFramesPlayed());
+                assertEquals(2, client.getKeyframeCount());
+                checkSame(game, client, tolerance);
+                for (int i = 1; i < 100; i++) {
+                    step(game, i);
+                    waitForFrame(watcher, game.getFramesPlayed());
+                }
+                assertEquals(599 + 99, client.getDeltaCount());
+                checkSame(game, client, tolerance);
+                assertTrue(watcher.error == null);
+            } finally {
+                stream.close();
+            }
+        }
+    }
+
+    @Test
+    public void mergesFramesWhenTheSpectatorFallsBehind() throws Exception {
+        SpectatorStream stream = new SpectatorStream(0);
+        try (SpectatorClient client = connect(stream)) {
+            SnakeGame game = newGame(stream, false);
+
+            // Play without reading until the socket is full and frames are merged
+            int i = 0;
+            while (stream.getFramesMerged() < 1000) {
+                step(game, i++);
+                if (game.isGameOver()) { fail("the game ended after " + i + " frames"); }
+            }
+            assertTrue(stream.getFramesSent() < game.getFramesPlayed());
+
+            // Catch up: keep playing until a frame gets through without being merged
+            Watcher watcher = new Watcher(client);
+            watcher.start();
+            final long end = System.currentTimeMillis() + TIMEOUT_MILLIS;
+            while (true) {
+                long merged = stream.getFramesMerged();
+                step(game, i++);
+                if (stream.getFramesMerged() == merged) { break; }
+                if (System.currentTimeMillis() > end) { fail("the spectator never caught up"); }
+            }
+            waitForFrame(watcher, game.getFramesPlayed());
+            checkSame(game, client, TOLERANCE);
+            assertTrue(client.getKeyframeCount() + client.getDeltaCount() < game.getFramesPlayed());
+
+            // And it keeps up after that
+            for (int j = 0; j < 100; j++) {
+                step(game, i++);
+                waitForFrame(watcher, game.getFramesPlayed());
+            }
+            checkSame(game, client, TOLERANCE);
+            assertTrue(watcher.error == null);
+        } finally {
+            stream.close();
+        }
+    }
+
+    @Test
+    public void newSpectatorReplacesTheOldOne() throws Exception {
+        SpectatorStream stream = new SpectatorStream(0);
+        try (SpectatorClient first = connect(stream)) {
+            SnakeGame game = newGame(stream, false);
+            Watcher firstWatcher = new Watcher(first);
+            firstWatcher.start();
+            int i = 0;
+            for (; i < 50; i++) {
+                step(game, i);
+                waitForFrame(firstWatcher, game.getFramesPlayed());
+            }
+
+            // Keep playing while the second spectator connects, it must start with a keyframe
+            try (SpectatorClient second = new SpectatorClient("localhost", stream.getPort())) {
+                Watcher secondWatcher = new Watcher(second);
+                secondWatcher.start();
+                final long end = System.currentTimeMillis() + TIMEOUT_MILLIS;
+                while (secondWatcher.frame < 0) {
+                    step(game, i++);
+                    if (System.currentTimeMillis() > end) { fail("the second spectator never got a frame"); }
+                    Thread.sleep(1);
+                }
+                for (int j = 0; j < 50; j++) {
+                    step(game, i++);
+                    waitForFrame(secondWatcher, game.getFramesPlayed());
+                }
+                assertEquals(1, second.getKeyframeCount());
+                checkSame(game, second, TOLERANCE);
+                assertTrue(secondWatcher.error == null);
+                firstWatcher.join(TIMEOUT_MILLIS);
+                assertTrue("the first spectator is still connected", !firstWatcher.isAlive());
+            }
+        } finally {
+            stream.close();
+        }
+    }
+
+    /** Reads the messages of a client on its own thread, like a real spectator */
+    private static class Watcher extends Thread {
+        /** The client being read */
+        final SpectatorClient client;
+
+        /** The frame of the last message read, set after the message is applied */
+        volatile int frame = -1;
+
+        /** The error that stopped the reading, if any */
+        volatile IOException error;
+
+        Watcher(SpectatorClient client) {
+            this.client = client;
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (client.readMessage()) { frame = client.getFrame(); }
+            } catch (IOException ex) {
+                error = ex;
+            }
+        }
+    }
+
+    /**
+     * Connects a client to a stream and waits until the stream has it.
+     * @param stream the stream
+     * @return the client
+     */
+    private static SpectatorClient connect(SpectatorStream stream) throws IOException, InterruptedException {
+        SpectatorClient client = new SpectatorClient("localhost", stream.getPort());
+        final long end = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (!stream.hasSpectator()) {
+            if (System.currentTimeMillis() > end) { fail("the stream never accepted the spectator"); }
+            Thread.sleep(1);
+        }
+        return client;
+    }
+
+    /**
+     * Starts a game streamed to a stream. There are no random walls and
+     * eating doesn't change the snake, so steered in a circle (see step())
+     * the snake never dies.
+     * @param stream the stream
+     * @param compact if the snake is a PolylineSnake
+     * @return the game
+     */
+    private static SnakeGame newGame(SpectatorStream stream, boolean compact) {
+        SnakeGame game = new SnakeGame();
+        game.setDpToPxFactor(DENSITY);
+        game.setCompactBody(compact);
+        game.setWorldScale(2);
+        game.setWallPlacementProbability(0);
+        game.setLengthIncreasePerFood(0);
+        game.setSpeedIncreasePerFood(0);
+        game.setFoodCount(20);
+        game.setSpectatorStream(stream);
+        game.startGame(1080, 2200);
+        return game;
+    }
+
+    /**
+     * Steers a game around in a circle and updates it. Every so often a short
+     * lived wall is added in a corner, away from the snake, so that items are
+     * added and removed.
+     * @param game the game
+     * @param i the number of the frame
+     */
+    private static void step(SnakeGame game, int i) {
+        if (i % 50 == 0) { game.addWall(100 + i % 400, 100, 30); }
+        game.setMovementDirection(i * 0.012);
+        assertTrue("frame " + i, game.update());
+    }
+
+    /**
+     * Waits until a client has read the message for a frame.
+     * @param watcher reads the client
+     * @param frame the frame
+     */
+    private static void waitForFrame(Watcher watcher, int frame) throws InterruptedException {
+        final long end = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (watcher.frame != frame) {
+            if (watcher.error != null) { throw new AssertionError("reading failed", watcher.error); }
+            if (System.currentTimeMillis() > end) { fail("frame " + frame + " never arrived, at " + watcher.frame); }
+            Thread.sleep(0, 100_000);
+        }
+    }
+
+    /**
+     * Checks that a client has rebuilt the game.
+     * @param game the game
+     * @param client the client
+     * @param tolerance how far body points may be from the game, in px
+     */
+    private static void checkSame(SnakeGame game, SpectatorClient client, float tolerance) {
+        assertEquals(game.getFramesPlayed(), client.getFrame());
+        assertEquals(game.getScore(), client.getScore());
+        assertEquals(game.getWorldWidth(), client.getWidth());
+        assertEquals(game.getWorldHeight(), client.getHeight());
+
+        List<PointF> body = game.getSnake().getBody();
+        List<float[]> sent = client.getBody();
+        assertEquals(body.size(), sent.size());
+        for (int i = 0; i < body.size(); i++) {
+            assertEquals("body x " + i, body.get(i).x, sent.get(i)[0], tolerance);
+            assertEquals("body y " + i, body.get(i).y, sent.get(i)[1], tolerance);
+        }
+
+        ItemStore items = game.getItems();
+        Map<Integer, float[]> sentItems = client.getItems();
+        assertEquals(items.size(), sentItems.size());
+        for (int i = 0; i < items.size(); i++) {
+            float[] item = sentItems.get(items.getId(i));
+            assertNotNull("item " + items.getId(i), item);
+            assertEquals(items.getType(i), (int) item[0]);
+            assertEquals(items.getX(i), item[1], 0);
+            assertEquals(items.getY(i), item[2], 0);
+            assertEquals(items.getRadius(i), item[3], 0);
+        }
+    }
+}
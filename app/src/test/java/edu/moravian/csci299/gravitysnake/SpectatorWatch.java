@@ -0,0 +1,33 @@
+package edu.moravian.csci299.gravitysnake;
+
+import java.io.IOException;
+
+/**
+ * Watches a spectator stream from the command line with SpectatorClient,
+ * printing the frame, score, length, and item count once a second until the
+ * stream ends. The only argument is the port (and optionally the host before
+ * it), for example after "adb forward tcp:PORT tcp:PORT".
+ */
+public class SpectatorWatch {
+    /**
+     * Watches a stream, printing a summary once a second until it ends.
+     * @param args the port, or the host and the port
+     * @throws IOException if the connection fails
+     */
+    public static void main(String[] args) throws IOException {
+        String host = args.length > 1 ? args[0] : "localhost";
+        int port = Integer.parseInt(args[args.length - 1]);
+        try (SpectatorClient client = new SpectatorClient(host, port)) {
+            long lastPrint = 0;
+            while (client.readMessage()) {
+                long now = System.currentTimeMillis();
+                if (now - lastPrint >= 1000) {
+                    System.out.printf("frame %d score %d length %d items %d (%d keyframes, %d bytes)%n",
+                            client.getFrame(), client.getScore(), client.getBodySize(), client.getItems().size(),
+                            client.getKeyframeCount(), client.getBytesRead());
+                    lastPrint = now;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package edu.moravian.csci299.gravitysnake;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Checks that TimingWheel fires every event exactly on the frame it is due,
+ * including events many turns of the wheel ahead, events sharing a slot, and
+ * events scheduled while others are firing, and that events that could never
+ * fire are turned down. Also checks that the geometric delays walls are
+ * scheduled with (GameRandom.nextGeometric()) average 1 / p like rolling
+ * every frame would.
+ */
+public class TimingWheelTest {
+    /** The number of slots of the wheels */
+    private final static int SLOTS = 256;
+
+    @Test
+    public void firesOnTheDueFrameAcrossTurns() {
+        TimingWheel wheel = new TimingWheel(SLOTS);
+        Random random = new Random(1);
+        final int n = 5000;
+        int[] dues = new int[n], fired = new int[n];
+        for (int i = 0; i < n; i++) {
+            dues[i] = 1 + random.nextInt(10 * SLOTS);
+            wheel.schedule(dues[i], 7, i);
+        }
+        assertEquals(n, wheel.size());
+
+        final int[] firedCount = { 0 };
+        for (int frame = 1; frame <= 10 * SLOTS; frame++) {
+            wheel.advance((event, payload) -> {
+                assertEquals(7, event);
+                assertEquals("event " + payload + " fired twice", 0, fired[payload]);
+                fired[payload] = wheel.getFrame();
+                firedCount[0]++;
+            });
+            assertEquals(frame, wheel.getFrame());
+        }
+        assertEquals(n, firedCount[0]);
+        assertEquals(0, wheel.size());
+        for (int i = 0; i < n; i++) { assertEquals("event " + i, dues[i], fired[i]); }
+    }
+
+    @Test
+    public void eventsAddedWhileFiringFireOnTime() {
+        TimingWheel wheel = new TimingWheel(SLOTS);
+        // Many events in one slot, some due a turn or two later, so firing swaps them around
+        for (int i = 0; i < 40; i++) { wheel.scheduleAt(10 + (i % 3) * SLOTS, i % 3, i); }
+
+        final List<int[]> fired = new ArrayList<>();
+        TimingWheel.Listener listener = new TimingWheel.Listener() {
+            @Override
+            public void fire(int event, int payload) {
+                fired.add(new int[] { wheel.getFrame(), event, payload });
+                // Each first turn event adds one to the same slot a turn later and one for the next frame
+                if (event == 0) {
+                    wheel.schedule(SLOTS, 1, 1000 + payload);
+                    wheel.schedule(1, 3, 2000 + payload);
+                }
+            }
+        };
+        for (int frame = 1; frame <= 10 + 3 * SLOTS; frame++) { wheel.advance(listener); }
+
+        assertEquals(40 + 2 * 14, fired.size());
+        int[] perFrame = new int[11 + 3 * SLOTS];
+        for (int[] f : fired) {
+            final int event = f[1], payload = f[2];
+            final int due = event == 3 ? 11 : 10 + event * SLOTS;
+            assertEquals("event " + event + " payload " + payload, due, f[0]);
+            perFrame[f[0]]++;
+        }
+        assertEquals(14, perFrame[10]);
+        assertEquals(14, perFrame[11]);
+        assertEquals(13 + 14, perFrame[10 + SLOTS]);
+        assertEquals(13, perFrame[10 + 2 * SLOTS]);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void eventsThatCouldNeverFireAreTurnedDown() {
+        TimingWheel wheel = new TimingWheel(SLOTS);
+        for (int i = 0; i < 5; i++) { wheel.advance((event, payload) -> fail("nothing was scheduled")); }
+        for (int due : new int[] { 5, 4, 0, -1 }) {
+            try {
+                wheel.scheduleAt(due, 0, 0);
+                fail("scheduled at " + due + " on frame 5");
+            } catch (IllegalArgumentException expected) {
+                // turned down
+            }
+        }
+        assertEquals(0, wheel.size());
+
+        // A delay of 0 still fires on the next frame
+        wheel.schedule(0, 0, 0);
+        final int[] firedAt = { -1 };
+        wheel.advance((event, payload) -> firedAt[0] = wheel.getFrame());
+        assertEquals(6, firedAt[0]);
+    }
+
+    @Test
+    public void clearDropsEverything() {
+        TimingWheel wheel = new TimingWheel(SLOTS);
+        for (int i = 1; i < 100; i++) { wheel.schedule(i, 0, i); }
+        wheel.clear(1000);
+        assertEquals(0, wheel.size());
+        assertEquals(1000, wheel.getFrame());
+        for (int i = 0; i < 2 * SLOTS; i++) { wheel.advance((event, payload) -> fail("fired " + payload)); }
+    }
+
+    @Test
+    public void geometricDelaysAverageOneOverP() {
+        GameRandom random = new GameRandom(1);
+        for (double p : new double[] { 0.002, 0.005, 0.05, 0.5 }) {
+            final int n = 200_000;
+            double sum = 0;
+            int min = Integer.MAX_VALUE;
+            for (int i = 0; i < n; i++) {
+                int delay = random.nextGeometric(p);
+                sum += delay;
+                min = Math.min(min, delay);
+            }
+            // The standard deviation of the mean is sqrt(1 - p) / p / sqrt(n), well under 1%
+            assertEquals("p = " + p, 1 / p, sum / n, 0.01 / p);
+            assertEquals(1, min);
+        }
+        assertEquals(1, random.nextGeometric(1));
+        assertTrue(random.nextGeometric(1e-300) > 0);
+    }
+}
@@ -0,0 +1,168 @@
+package edu.moravian.csci299.gravitysnake;
+
+import android.graphics.PointF;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the batched touch checks against brute force: the items found with
+ * one query for a batch of touch segments are the items any of the segments
+ * overlaps (out of 3000 random items), and the snake is touched by a batch
+ * when it is touched by any one of its segments, for both kinds of body.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class TouchBatchTest {
+    /** The factor to convert dp to px (a common phone) */
+    private final static float DENSITY = 2.75f;
+
+    /** The size of the world, in px */
+    private final static int SIZE = 2000;
+
+    /** The number of random batches to check */
+    private final static int BATCHES = 500;
+
+    @Test
+    public void segmentDistanceMatchesSampling() {
+        Random random = new Random(1);
+        for (int t = 0; t < 10000; t++) {
+            float[] p = new float[8];
+            for (int i = 0; i < 8; i++) { p[i] = random.nextFloat() * 100; }
+            if (t % 5 == 0) { p[2] = p[0]; p[3] = p[1]; } // a single point
+            double distance = Math.sqrt(Util.segmentsDistanceSquared(p[0], p[1], p[2], p[3], p[4], p[5], p[6], p[7]));
+
+            float best = Float.MAX_VALUE;
+            for (int i = 0; i <= 1000; i++) {
+                float s = i / 1000f, x = p[0] + s * (p[2] - p[0]), y = p[1] + s * (p[3] - p[1]);
+                best = Math.min(best, Util.distanceToSegmentSquared(x, y, p[4], p[5], p[6], p[7]));
+            }
+            assertEquals("pair " + t, Math.sqrt(best), distance, 0.2);
+        }
+    }
+
+    @Test
+    public void batchFindsTheSameItemsAsBruteForce() {
+        Random random = new Random(2);
+        ItemStore items = new ItemStore(new SpatialGrid(SIZE, SIZE, 60));
+        for (int i = 0; i < 3000; i++) {
+            items.add(random.nextInt(2), random.nextFloat() * SIZE, random.nextFloat() * SIZE,
+                    10 + random.nextFloat() * 20, ItemStore.NEVER);
+        }
+        float[] segments = new float[4 * 8];
+        for (int t = 0; t < BATCHES; t++) {
+            final int count = randomBatch(random, segments);
+            final float radius = 5 + random.nextFloat() * 20;
+
+            Set<Integer> found = new HashSet<>();
+            final int hits = items.findNearSegments(segments, count, radius);
+            for (int i = 0; i < hits; i++) { assertTrue("found twice", found.add(items.getHit(i))); }
+
+            Set<Integer> expected = new HashSet<>();
+            for (int i = 0; i < items.size(); i++) {
+                float range = radius + items.getRadius(i);
+                for (int j = 0; j < 4 * count; j += 4) {
+                    if (Util.distanceToSegmentSquared(items.getX(i), items.getY(i), segments[j], segments[j + 1],
+                            segments[j + 2], segments[j + 3]) < range * range) {
+                        expected.add(i);
+                    }
+                }
+            }
+            assertEquals("batch " + t, expected, found);
+        }
+    }
+
+    @Test
+    public void snakeBatchMatchesEachSegment() {
+        Snake indexed = new Snake(new PointF(SIZE / 2f, SIZE / 2f), DENSITY, 400);
+        indexed.setSpatialIndex(new SpatialGrid(SIZE, SIZE, 2 * Snake.BODY_PIECE_SIZE_DP * DENSITY));
+        checkBody(indexed, new Random(3));
+        checkBody(new Snake(new PointF(SIZE / 2f, SIZE / 2f), DENSITY, 400), new Random(3));
+    }
+
+    @Test
+    public void polylineSnakeBatchMatchesEachSegment() {
+        checkBody(new PolylineSnake(new PointF(SIZE / 2f, SIZE / 2f), DENSITY, 400), new Random(3));
+        checkBody(new PolylineSnake(new PointF(SIZE / 2f, SIZE / 2f), DENSITY, 0), new Random(4));
+    }
+
+    @Test
+    public void swipeRemovesEveryWallItCrosses() {
+        SnakeGame game = new SnakeGame();
+        game.setDpToPxFactor(DENSITY);
+        game.setWallPlacementProbability(0);
+        game.startGame(1080, 2200);
+        for (int i = 0; i < 10; i++) { game.addWall(100 + 40 * i, 100 + 40 * i, 0); }
+        game.addWall(900, 100, 0);
+
+        assertTrue(game.touchedSegments(new float[] { 50, 50, 300, 300, 300, 300, 500, 500 }, 2));
+        assertEquals(1, game.getItems().countOfType(ItemStore.WALL));
+        assertFalse(game.isGameOver());
+
+        PointF head = game.getSnake().getHead();
+        assertFalse(game.touchedSegments(new float[] { 0, 0, 10, 10, head.x - 200, head.y, head.x + 200, head.y }, 2));
+        assertTrue(game.isGameOver());
+    }
+
+    /**
+     * Winds a snake around the world and checks random batches against it,
+     * the batch must touch the snake exactly when one of its segments does.
+     * @param snake the snake
+     * @param random makes the moves and batches
+     */
+    private static void checkBody(SnakeBody snake, Random random) {
+        float[] segments = new float[4 * 8];
+        int touched = 0;
+        for (int t = 0; t < BATCHES; t++) {
+            for (int i = 0; i < 5; i++) {
+                // Mostly around the middle of the world, sometimes in towards it
+                PointF head = snake.getHead();
+                double toMiddle = Math.atan2(SIZE / 2f - head.y, SIZE / 2f - head.x);
+                snake.move(toMiddle + Math.PI / 2 * (0.8 + 0.3 * Math.sin(t * 0.07)), 3 + 5 * random.nextDouble());
+            }
+            assertFalse("left the world", snake.headIsOutOfBounds(SIZE, SIZE));
+            final int count = randomBatch(random, segments);
+            final float radius = 5 + random.nextFloat() * 20;
+
+            boolean expected = false;
+            for (int j = 0; j < 4 * count; j += 4) {
+                expected |= snake.bodyIntersectsSegment(segments[j], segments[j + 1], segments[j + 2],
+                        segments[j + 3], radius);
+            }
+            assertEquals("batch " + t, expected, snake.bodyIntersectsAnySegment(segments, count, radius));
+            if (expected) { touched++; }
+        }
+        assertTrue("only " + touched + " batches touched the snake", touched > BATCHES / 20);
+    }
+
+    /**
+     * Makes a random batch of touch segments, like a few fingers moving
+     * around a part of the screen. Some of the segments are single points.
+     * @param random makes the batch
+     * @param segments filled with the start x, start y, end x, and end y of
+     *                 each segment, in px
+     * @return the number of segments
+     */
+    private static int randomBatch(Random random, float[] segments) {
+        final int count = 1 + random.nextInt(segments.length / 4);
+        final float centerX = SIZE / 4f + random.nextFloat() * SIZE / 2, centerY = SIZE / 4f + random.nextFloat() * SIZE / 2;
+        for (int j = 0; j < 4 * count; j += 4) {
+            segments[j] = centerX + random.nextFloat() * 400 - 200;
+            segments[j + 1] = centerY + random.nextFloat() * 400 - 200;
+            boolean point = random.nextInt(4) == 0;
+            segments[j + 2] = point ? segments[j] : segments[j] + random.nextFloat() * 200 - 100;
+            segments[j + 3] = point ? segments[j + 1] : segments[j + 1] + random.nextFloat() * 200 - 100;
+        }
+        return count;
+    }
+}